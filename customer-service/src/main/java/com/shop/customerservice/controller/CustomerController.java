@@ -8,7 +8,6 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
-import java.util.Map;
 
 
 @RestController
@@ -53,9 +52,9 @@ public class CustomerController {
         service.cleanCart(id);
     }
 
-    @PutMapping("identify/email")
-    public void customerIdentify(@RequestBody Map<String,String> productsWasOutMap) {
-        service.customerIdentify(productsWasOutMap);
+    @PutMapping("remove/cart/{id}")
+    public void removeFromCart(@PathVariable(name = "id") String id, @RequestBody List<Long> listProductId) {
+        service.removeFromCart(id, listProductId);
     }
 
 }
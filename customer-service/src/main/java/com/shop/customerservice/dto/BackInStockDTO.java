@@ -0,0 +1,19 @@
+package com.shop.customerservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BackInStockDTO {
+
+    private Long productId;
+    private String productName;
+    private List<String> listCustomerId;
+}
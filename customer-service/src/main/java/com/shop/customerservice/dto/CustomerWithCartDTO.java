@@ -12,6 +12,7 @@ import org.bson.types.ObjectId;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.List;
 import java.util.Map;
 
 
@@ -39,7 +40,9 @@ public class CustomerWithCartDTO {
 
     private LocalDate dateOfBirth;
 
-    private Map<ProductDuplicateDTO, Integer> cart;
+    private List<CartItemDTO> cart;
+
+    private Map<Long, ProductDuplicateDTO> products;
 
     private Boolean newsLetterSubscribe;
 
@@ -1,5 +1,6 @@
 package com.shop.customerservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -7,6 +8,7 @@ import lombok.NoArgsConstructor;
 import org.bson.types.ObjectId;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Map;
 
 @NoArgsConstructor
@@ -17,6 +19,9 @@ public class OrderWithProductCartDTO {
 
     private String id;
     private String customerId;
-    private Map<ProductDuplicateDTO, Integer> cart;
+    private List<CartItemDTO> cart;
     private BigDecimal cost;
+    // descriptions of the products in the cart by product id, only sent to clients that show them
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Map<Long, ProductDuplicateDTO> products;
 }
\ No newline at end of file
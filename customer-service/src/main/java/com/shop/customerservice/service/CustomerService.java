@@ -2,6 +2,8 @@ package com.shop.customerservice.service;
 
 import com.shop.customerservice.client.NotificationClient;
 import com.shop.customerservice.client.ProductClient;
+import com.shop.customerservice.dto.BackInStockDTO;
+import com.shop.customerservice.dto.CartItemDTO;
 import com.shop.customerservice.dto.CustomerDTO;
 import com.shop.customerservice.dto.CustomerWithCartDTO;
 import com.shop.customerservice.dto.MailDTO;
@@ -19,14 +21,12 @@ import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
@@ -92,19 +92,23 @@ public class CustomerService {
         log.info("Customer found: {}", customer);
 
         if (customer != null) {
-            List<Long> listId = new ArrayList<>();
-            List<Integer> listQuantity = new ArrayList<>();
-            for (Map.Entry<Long, Integer> entry : customer.getCart().entrySet()) {
-                listId.add(entry.getKey());
-                listQuantity.add(entry.getValue());
-            }
+            List<Long> listId = new ArrayList<>(customer.getCart().keySet());
             log.info("Customer cart product IDs: {}", listId);
-            log.info("Customer cart quantities: {}", listQuantity);
 
-            List<ProductDuplicateDTO> listProducts = productClient.nameIdentifier(listId);
-            Map<ProductDuplicateDTO, Integer> cartWithProduct = new HashMap<>();
-            for (ProductDuplicateDTO product : listProducts) {
-                cartWithProduct.put(product, listQuantity.remove(0));
+            Map<Long, ProductDuplicateDTO> products = new HashMap<>();
+            for (ProductDuplicateDTO product : productClient.nameIdentifier(listId)) {
+                if (product != null) {
+                    products.put(product.getId(), product);
+                }
+            }
+            List<CartItemDTO> cart = new ArrayList<>();
+            for (Long productId : listId) {
+                ProductDuplicateDTO product = products.get(productId);
+                cart.add(CartItemDTO.builder()
+                        .productId(productId)
+                        .quantity(customer.getCart().get(productId))
+                        .unitPrice(product != null ? product.getCost() : null)
+                        .build());
             }
             CustomerWithCartDTO customerWithCartDTO = CustomerWithCartDTO.builder()
                     .name(customer.getName())
@@ -116,7 +120,8 @@ public class CustomerService {
                     .nickName(customer.getNickName())
                     .phoneNumber(customer.getPhoneNumber())
                     .id(customer.getId().toHexString())
-                    .cart(cartWithProduct)
+                    .cart(cart)
+                    .products(products)
                     .build();
 
             log.info("CustomerWithCartDTO created: {}", customerWithCartDTO);
@@ -149,24 +154,38 @@ public class CustomerService {
         return customerDTO;
     }
 
-    public void customerIdentify(Map<String, String> productsWasOutMap) {
-        log.info("Identifying customers for products that were out of stock");
-        for (Map.Entry<String, String> entry : productsWasOutMap.entrySet()) {
-            Customer customer = repository.findById(new ObjectId(entry.getKey())).orElse(null);
-
-            if (customer != null) {
-                Map<String, Object> data = Map.of(
-                        "Product", entry.getValue(),
-                        "Name", customer.getName()
-                );
-                MailDTO mailDTO = MailDTO.builder()
-                        .data(data)
-                        .to(customer.getEmail())
-                        .build();
-                notificationClient.sendUpdateStorageEmail(mailDTO);
-                log.info("Sent update email to customer: {}", customer.getEmail());
-            } else {
-                log.warn("Customer with id {} not found for product: {}", entry.getKey(), entry.getValue());
+    @KafkaListener(topics = "back-in-stock-topic",
+            groupId = "${spring.kafka.consumer-groups.back-in-stock-group.group-id}",
+            properties = {
+                    "spring.json.value.default.type=com.shop.customerservice.dto.BackInStockDTO",
+                    "spring.json.use.type.headers=false"
+            })
+    public void notifyBackInStock(BackInStockDTO backInStockDTO) {
+        log.info("Notifying {} customers that product {} is back in stock",
+                backInStockDTO.getListCustomerId().size(), backInStockDTO.getProductName());
+        List<ObjectId> listCustomerId = new ArrayList<>();
+        for (String customerId : backInStockDTO.getListCustomerId()) {
+            listCustomerId.add(new ObjectId(customerId));
+        }
+
+        Set<String> foundCustomerId = new HashSet<>();
+        for (Customer customer : repository.findAllById(listCustomerId)) {
+            foundCustomerId.add(customer.getId().toHexString());
+            Map<String, Object> data = Map.of(
+                    "Product", backInStockDTO.getProductName(),
+                    "Name", customer.getName()
+            );
+            MailDTO mailDTO = MailDTO.builder()
+                    .data(data)
+                    .to(customer.getEmail())
+                    .build();
+            notificationClient.sendUpdateStorageEmail(mailDTO);
+            log.info("Sent update email to customer: {}", customer.getEmail());
+        }
+
+        for (String customerId : backInStockDTO.getListCustomerId()) {
+            if (!foundCustomerId.contains(customerId)) {
+                log.warn("Customer with id {} not found for product: {}", customerId, backInStockDTO.getProductName());
             }
         }
     }
@@ -179,4 +198,18 @@ public class CustomerService {
         mongoTemplate.updateFirst(query, update, "customer");
         log.info("Cart cleaned for customer with id: {}", id);
     }
+
+    public void removeFromCart(String id, List<Long> listProductId) {
+        if (listProductId.isEmpty()) {
+            return;
+        }
+        log.info("Removing products {} from cart for customer with id: {}", listProductId, id);
+        Query query = new Query(Criteria.where("id").is(new ObjectId(id)));
+        Update update = new Update();
+        for (Long productId : listProductId) {
+            update.unset("cart." + productId);
+        }
+        mongoTemplate.updateFirst(query, update, "customer");
+        log.info("Products removed from cart for customer with id: {}", id);
+    }
 }
@@ -1,6 +1,7 @@
 package com.shop.customerservice.service;
 
 import com.shop.customerservice.client.ProductClient;
+import com.shop.customerservice.dto.CartItemDTO;
 import com.shop.customerservice.dto.OrderDuplicateDTO;
 import com.shop.customerservice.dto.OrderWithProductCartDTO;
 import com.shop.customerservice.dto.ProductDuplicateDTO;
@@ -12,6 +13,7 @@ import org.bson.types.ObjectId;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
@@ -27,15 +29,19 @@ public class OrderService {
 
     private final OrderRepository repository;
     private final ProductClient productClient;
-    private Map<Long, Integer> cartWithId;
 
     @CachePut(value = {"order", "allOrders"}, key = "#orderDuplicateDTO.id")
-    @KafkaListener(topics = "order-topic", groupId = "${spring.kafka.consumer-groups.order-group.group-id}")
+    @KafkaListener(topics = "order-topic",
+            groupId = "${spring.kafka.consumer-groups.order-group.group-id}",
+            properties = {
+                    "spring.json.value.default.type=com.shop.customerservice.dto.OrderWithProductCartDTO",
+                    "spring.json.use.type.headers=false"
+            })
     public Order saveOrder(OrderWithProductCartDTO orderDuplicateDTO) {
         log.info("Received order for saving: {}", orderDuplicateDTO);
-        cartWithId = new HashMap<>();
-        for (Map.Entry<ProductDuplicateDTO, Integer> entry : orderDuplicateDTO.getCart().entrySet()) {
-            cartWithId.put(entry.getKey().getId(), entry.getValue());
+        Map<Long, Integer> cartWithId = new HashMap<>();
+        for (CartItemDTO item : orderDuplicateDTO.getCart()) {
+            cartWithId.merge(item.getProductId(), item.getQuantity(), Integer::sum);
         }
         Order order = Order.builder()
                 .id(new ObjectId(orderDuplicateDTO.getId()))
@@ -44,17 +50,22 @@ public class OrderService {
                 .cost(orderDuplicateDTO.getCost())
                 .build();
 
-        Order savedOrder = repository.save(order);
-        log.info("Order saved successfully: {}", savedOrder);
-        return savedOrder;
+        try {
+            Order savedOrder = repository.insert(order);
+            log.info("Order saved successfully: {}", savedOrder);
+            return savedOrder;
+        } catch (DuplicateKeyException e) {
+            log.warn("Order with id {} was already saved, skipping", orderDuplicateDTO.getId());
+            return repository.findById(order.getId()).orElse(order);
+        }
     }
 
     @CachePut(value = {"order", "allOrders"}, key = "#orderDuplicateDTO.id")
     public Order updateOrder(OrderWithProductCartDTO orderDuplicateDTO) {
         log.info("Updating order: {}", orderDuplicateDTO);
-        cartWithId = new HashMap<>();
-        for (Map.Entry<ProductDuplicateDTO, Integer> entry : orderDuplicateDTO.getCart().entrySet()) {
-            cartWithId.put(entry.getKey().getId(), entry.getValue());
+        Map<Long, Integer> cartWithId = new HashMap<>();
+        for (CartItemDTO item : orderDuplicateDTO.getCart()) {
+            cartWithId.merge(item.getProductId(), item.getQuantity(), Integer::sum);
         }
         Order order = Order.builder()
                 .id(new ObjectId(orderDuplicateDTO.getId()))
@@ -81,25 +92,30 @@ public class OrderService {
         Order order = repository.findById(new ObjectId(id)).orElse(null);
         log.info("Order found: {}", order);
 
-        List<Long> listId = new ArrayList<>();
-        List<Integer> listQuantity = new ArrayList<>();
-        for (Map.Entry<Long, Integer> entry : order.getCart().entrySet()) {
-            listId.add(entry.getKey());
-            listQuantity.add(entry.getValue());
+        List<Long> listId = new ArrayList<>(order.getCart().keySet());
+        Map<Long, ProductDuplicateDTO> products = new HashMap<>();
+        for (ProductDuplicateDTO product : productClient.nameIdentifier(listId)) {
+            if (product != null) {
+                products.put(product.getId(), product);
+            }
         }
-        List<ProductDuplicateDTO> listProducts = productClient.nameIdentifier(listId);
-        Map<ProductDuplicateDTO, Integer> cartWithProduct = new HashMap<>();
-        for (ProductDuplicateDTO product : listProducts) {
-            cartWithProduct.put(product, listQuantity.remove(0));
+        List<CartItemDTO> cart = new ArrayList<>();
+        for (Long productId : listId) {
+            ProductDuplicateDTO product = products.get(productId);
+            cart.add(CartItemDTO.builder()
+                    .productId(productId)
+                    .quantity(order.getCart().get(productId))
+                    .unitPrice(product != null ? product.getCost() : null)
+                    .build());
         }
 
-
         OrderWithProductCartDTO orderDuplicateDTO;
         orderDuplicateDTO = OrderWithProductCartDTO.builder()
                 .cost(order.getCost())
                 .id(order.getId().toHexString())
                 .customerId(order.getCustomerId())
-                .cart(cartWithProduct)
+                .cart(cart)
+                .products(products)
                 .build();
         return orderDuplicateDTO;
     }
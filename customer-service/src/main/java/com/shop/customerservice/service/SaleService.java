@@ -36,7 +36,12 @@ public class SaleService {
     }
 
     @CachePut(value = {"sale", "allSales"}, key = "#saleDuplicateDTO.id")
-    @KafkaListener(topics = "sale-topic", groupId = "${spring.kafka.consumer-groups.sale-group.group-id}")
+    @KafkaListener(topics = "sale-topic",
+            groupId = "${spring.kafka.consumer-groups.sale-group.group-id}",
+            properties = {
+                    "spring.json.value.default.type=com.shop.customerservice.dto.SaleDuplicateDTO",
+                    "spring.json.use.type.headers=false"
+            })
     public Sale saveSaleDTO(SaleDuplicateDTO saleDuplicateDTO) {
         log.info("Received sale dto for saving: {}", saleDuplicateDTO);
         Sale sale = Sale.builder()
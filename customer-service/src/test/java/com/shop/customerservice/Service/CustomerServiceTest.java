@@ -2,6 +2,7 @@ package com.shop.customerservice.service;
 
 import com.shop.customerservice.client.NotificationClient;
 import com.shop.customerservice.client.ProductClient;
+import com.shop.customerservice.dto.BackInStockDTO;
 import com.shop.customerservice.dto.CustomerDTO;
 import com.shop.customerservice.dto.CustomerWithCartDTO;
 import com.shop.customerservice.dto.MailDTO;
@@ -9,6 +10,7 @@ import com.shop.customerservice.enums.Gender;
 import com.shop.customerservice.model.Customer;
 import com.shop.customerservice.model.Sale;
 import com.shop.customerservice.repository.CustomerRepository;
+import org.bson.Document;
 import org.bson.types.ObjectId;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,6 +20,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.kafka.core.KafkaTemplate;
 
 import java.util.*;
@@ -147,17 +150,23 @@ class CustomerServiceTest {
     }
 
     @Test
-    void customerIdentifyTest() {
+    void notifyBackInStockTest() {
 //        given
-        Map<String, String> productsOutMap = Map.of("507f1f77bcf86cd799439011", "ProductA");
-        when(customerRepository.findById(any(ObjectId.class))).thenReturn(Optional.of(customer));
+        String missingCustomerId = new ObjectId().toHexString();
+        BackInStockDTO backInStockDTO = BackInStockDTO.builder()
+                .productId(1L)
+                .productName("ProductA")
+                .listCustomerId(List.of(customer.getId().toHexString(), missingCustomerId))
+                .build();
+        when(customerRepository.findAllById(anyList())).thenReturn(List.of(customer));
         ArgumentCaptor<MailDTO> mailCaptor = ArgumentCaptor.forClass(MailDTO.class);
 
 //        when
-        customerService.customerIdentify(productsOutMap);
+        customerService.notifyBackInStock(backInStockDTO);
 
 //        then
-        verify(notificationClient).sendUpdateStorageEmail(mailCaptor.capture());
+        verify(customerRepository, times(1)).findAllById(List.of(customer.getId(), new ObjectId(missingCustomerId)));
+        verify(notificationClient, times(1)).sendUpdateStorageEmail(mailCaptor.capture());
         assertEquals(customer.getEmail(), mailCaptor.getValue().getTo());
         assertEquals("ProductA", mailCaptor.getValue().getData().get("Product"));
     }
@@ -170,4 +179,16 @@ class CustomerServiceTest {
 //        then
         verify(mongoTemplate).updateFirst(any(), any(), eq("customer"));
     }
+
+    @Test
+    void removeFromCartTest() {
+//       when
+        customerService.removeFromCart(customer.getId().toHexString(), List.of(1L, 2L));
+
+//        then
+        ArgumentCaptor<Update> captor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(any(), captor.capture(), eq("customer"));
+        Document unset = (Document) captor.getValue().getUpdateObject().get("$unset");
+        assertEquals(Set.of("cart.1", "cart.2"), unset.keySet());
+    }
 }
@@ -198,18 +198,17 @@ class CustomerControllerTest {
     }
 
     @Test
-    void testCustomerIdentify() throws Exception {
+    void removeFromCart() throws Exception {
 //        given
-        doNothing().when(customerService).customerIdentify(any());
-        Map<String, String> productsWasOutMap = Map.of("key", "value");
+        doNothing().when(customerService).removeFromCart(anyString(), anyList());
 
 //        when
-        mockMvc.perform(put("/api/v1/customer/identify/email")
+        mockMvc.perform(put("/api/v1/customer/remove/cart/1")
                         .contentType(MediaType.APPLICATION_JSON)
-                        .content(new ObjectMapper().writeValueAsString(productsWasOutMap)))
+                        .content("[1,2]"))
                 .andExpect(status().isOk());
 
 //        then
-        verify(customerService, times(1)).customerIdentify(any(Map.class));
+        verify(customerService, times(1)).removeFromCart("1", List.of(1L, 2L));
     }
 }
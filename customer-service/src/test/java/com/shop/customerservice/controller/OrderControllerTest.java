@@ -1,6 +1,7 @@
 package com.shop.customerservice.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.customerservice.dto.CartItemDTO;
 import com.shop.customerservice.dto.OrderWithProductCartDTO;
 import com.shop.customerservice.model.Order;
 import com.shop.customerservice.service.OrderService;
@@ -17,6 +18,7 @@ import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -41,18 +43,21 @@ class OrderControllerTest {
     void setUp() {
         order = Order.builder()
                 .id(new ObjectId())
-                .customerId("id")
+                .customerId("customerId")
                 .cost(new BigDecimal(1000))
+                .cart(Map.of(2L, 2))
                 .build();
 
         orderWithProductCartDTO = OrderWithProductCartDTO.builder()
                 .id("id")
                 .customerId("customerId")
                 .cost(new BigDecimal(600))
+                .cart(List.of(CartItemDTO.builder()
+                        .productId(2L)
+                        .quantity(2)
+                        .unitPrice(new BigDecimal(300))
+                        .build()))
                 .build();
-
-
-
     }
 
     @Test
@@ -68,7 +73,7 @@ class OrderControllerTest {
                 .andExpect(jsonPath("$.id").exists())
                 .andExpect(jsonPath("$.customerId").value("customerId"))
                 .andExpect(jsonPath("$.cost").value(1000))
-                .andExpect(jsonPath("$.cart[2]").value(2));
+                .andExpect(jsonPath("$.cart['2']").value(2));
 
 //        then
         verify(orderService, times(1)).saveOrder(any(OrderWithProductCartDTO.class));
@@ -87,7 +92,7 @@ class OrderControllerTest {
                 .andExpect(jsonPath("$.id").exists())
                 .andExpect(jsonPath("$.customerId").value("customerId"))
                 .andExpect(jsonPath("$.cost").value(1000))
-                .andExpect(jsonPath("$.cart[2]").value(2));
+                .andExpect(jsonPath("$.cart['2']").value(2));
 
 //        then
         verify(orderService, times(1)).updateOrder(any(OrderWithProductCartDTO.class));
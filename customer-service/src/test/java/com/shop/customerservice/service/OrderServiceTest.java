@@ -1,6 +1,7 @@
 package com.shop.customerservice.service;
 
 import com.shop.customerservice.client.ProductClient;
+import com.shop.customerservice.dto.CartItemDTO;
 import com.shop.customerservice.dto.OrderWithProductCartDTO;
 import com.shop.customerservice.dto.ProductDuplicateDTO;
 import com.shop.customerservice.model.Order;
@@ -12,6 +13,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
 
 import java.math.BigDecimal;
 import java.util.*;
@@ -48,8 +50,11 @@ class OrderServiceTest {
                 .feedBack(new BigDecimal("4.5"))
                 .build();
 
-        Map<ProductDuplicateDTO, Integer> cart = new HashMap<>();
-        cart.put(productDuplicateDTO, 1);
+        List<CartItemDTO> cart = List.of(CartItemDTO.builder()
+                .productId(1L)
+                .quantity(1)
+                .unitPrice(new BigDecimal("9.99"))
+                .build());
         orderWithProductCartDTO = OrderWithProductCartDTO.builder()
                 .id(new ObjectId().toHexString())
                 .customerId("customerId")
@@ -68,17 +73,31 @@ class OrderServiceTest {
     @Test
     void saveOrder() {
 //        given
-        when(repository.save(any(Order.class))).thenReturn(order);
+        when(repository.insert(any(Order.class))).thenReturn(order);
 
 //        when
         Order savedOrder = orderService.saveOrder(orderWithProductCartDTO);
 
 //        then
-        verify(repository).save(any(Order.class));
+        verify(repository).insert(any(Order.class));
         assertEquals(orderWithProductCartDTO.getCustomerId(), savedOrder.getCustomerId());
         assertEquals(orderWithProductCartDTO.getCost(), savedOrder.getCost());
     }
 
+    @Test
+    void saveOrderAlreadySaved() {
+//        given
+        when(repository.insert(any(Order.class))).thenThrow(new DuplicateKeyException("duplicate key"));
+        when(repository.findById(any(ObjectId.class))).thenReturn(Optional.of(order));
+
+//        when
+        Order savedOrder = orderService.saveOrder(orderWithProductCartDTO);
+
+//        then
+        assertEquals(order, savedOrder);
+        verify(repository, never()).save(any(Order.class));
+    }
+
     @Test
     void updateOrder() {
 //        given
@@ -118,6 +137,8 @@ class OrderServiceTest {
         verify(repository).findById(new ObjectId(order.getId().toHexString()));
         assertNotNull(foundOrder);
         assertEquals(order.getCustomerId(), foundOrder.getCustomerId());
+        assertEquals(orderWithProductCartDTO.getCart(), foundOrder.getCart());
+        assertEquals(Map.of(1L, productDuplicateDTO), foundOrder.getProducts());
     }
 
     @Test
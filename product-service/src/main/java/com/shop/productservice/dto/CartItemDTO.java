@@ -0,0 +1,19 @@
+package com.shop.productservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CartItemDTO {
+
+    private Long productId;
+    private Integer quantity;
+    private BigDecimal unitPrice;
+}
@@ -1,11 +1,13 @@
 package com.shop.productservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Map;
 
 @NoArgsConstructor
@@ -16,6 +18,8 @@ public class OrderWithProductCartDTO {
 
     private String id;
     private String customerId;
-    private Map<ProductDuplicateDTO, Integer> cart;
+    private List<CartItemDTO> cart;
     private BigDecimal cost;
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Map<Long, ProductDuplicateDTO> products;
 }
\ No newline at end of file
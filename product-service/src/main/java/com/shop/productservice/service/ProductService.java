@@ -21,8 +21,10 @@ import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
@@ -39,16 +41,15 @@ public class ProductService {
     private String bucketName;
     private final KafkaTemplate<String, MailDTO> kafkaVerification;
 
-    @Cacheable(value = "productWithQuantity")
     public List<ProductWithQuantityDTO> getAllProductWithQuantity(List<StorageDuplicateDTO> storageList) {
-        log.info("Fetching all products with quantity.");
-        List<Product> products = productRepository.findAll();
+        log.info("Fetching products with quantity for {} storage entries.", storageList.size());
         List<ProductWithQuantityDTO> resultList = new ArrayList<>();
 
-        Map<String, Integer> storageMap = new HashMap<>();
+        Map<Long, Integer> storageMap = new HashMap<>();
         for (StorageDuplicateDTO storageDuplicateDTO : storageList) {
-            storageMap.put(storageDuplicateDTO.getCustomerId(), storageDuplicateDTO.getQuantity());
+            storageMap.put(storageDuplicateDTO.getProductId(), storageDuplicateDTO.getQuantity());
         }
+        List<Product> products = productRepository.findAllById(storageMap.keySet());
 
         for (Product product : products) {
             ProductWithQuantityDTO productWithQuantityDTO = ProductWithQuantityDTO.builder()
@@ -64,7 +65,7 @@ public class ProductService {
                     .build();
             resultList.add(productWithQuantityDTO);
         }
-        log.info("Retrieved all products with quantities: {}", resultList);
+        log.info("Retrieved {} products with quantities", resultList.size());
         return resultList;
     }
 
@@ -73,7 +74,11 @@ public class ProductService {
         log.info("Received products with lack for verification: {}", productsWithLack);
         MailDTO mailDTO = new MailDTO();
         Map<String, Object> data = new HashMap<>();
-        List<Product> products = productRepository.findAll();
+        List<Long> listLackId = new ArrayList<>();
+        for (StorageDuplicateDTO storageDuplicateDTO : productsWithLack) {
+            listLackId.add(storageDuplicateDTO.getProductId());
+        }
+        List<Product> products = productRepository.findAllById(listLackId);
 
         Map<Long, String> productMap = new HashMap<>();
         for (Product product : products) {
@@ -82,7 +87,7 @@ public class ProductService {
 
         Map<String, Integer> LackMap = new HashMap<>();
         for (StorageDuplicateDTO storageDuplicateDTO : productsWithLack) {
-            LackMap.put(productMap.get(storageDuplicateDTO.getCustomerId()), storageDuplicateDTO.getQuantity());
+            LackMap.put(productMap.get(storageDuplicateDTO.getProductId()), storageDuplicateDTO.getQuantity());
         }
 
         data.put("MapOfLackProducts", LackMap);
@@ -154,24 +159,39 @@ public class ProductService {
 
     public List<OrderWithProductCartDTO> groupNameIdentifier(List<OrderDuplicateDTO> listOrders) {
         log.info("Grouping names for order identifiers: {}", listOrders);
+        // the products of all orders are loaded at once
+        Set<Long> setId = new LinkedHashSet<>();
+        for (OrderDuplicateDTO orderDuplicateDTO : listOrders) {
+            setId.addAll(orderDuplicateDTO.getCart().keySet());
+        }
+        Map<Long, ProductDuplicateDTO> productById = new HashMap<>();
+        for (ProductDuplicateDTO product : this.nameIdentifier(new ArrayList<>(setId))) {
+            if (product != null) {
+                productById.put(product.getId(), product);
+            }
+        }
+
         List<OrderWithProductCartDTO> resultList = new ArrayList<>();
         for (OrderDuplicateDTO orderDuplicateDTO : listOrders) {
-            List<Long> listId = new ArrayList<>();
-            List<Integer> listQuantity = new ArrayList<>();
+            List<CartItemDTO> cart = new ArrayList<>();
+            Map<Long, ProductDuplicateDTO> products = new HashMap<>();
             for (Map.Entry<Long, Integer> entry : orderDuplicateDTO.getCart().entrySet()) {
-                listId.add(entry.getKey());
-                listQuantity.add(entry.getValue());
-            }
-            List<ProductDuplicateDTO> listProducts = this.nameIdentifier(listId);
-            Map<ProductDuplicateDTO, Integer> cartWithProduct = new HashMap<>();
-            for (ProductDuplicateDTO product : listProducts) {
-                cartWithProduct.put(product, listQuantity.remove(0));
+                ProductDuplicateDTO product = productById.get(entry.getKey());
+                cart.add(CartItemDTO.builder()
+                        .productId(entry.getKey())
+                        .quantity(entry.getValue())
+                        .unitPrice(product != null ? product.getCost() : null)
+                        .build());
+                if (product != null) {
+                    products.put(entry.getKey(), product);
+                }
             }
             OrderWithProductCartDTO orderWithProductCartDTO = OrderWithProductCartDTO.builder()
                     .customerId(orderDuplicateDTO.getCustomerId())
                     .id(orderDuplicateDTO.getId())
                     .cost(orderDuplicateDTO.getCost())
-                    .cart(cartWithProduct)
+                    .cart(cart)
+                    .products(products)
                     .build();
             resultList.add(orderWithProductCartDTO);
         }
@@ -1,7 +1,10 @@
 package com.shop.productservice.service;
 
 import com.amazonaws.services.s3.AmazonS3;
+import com.shop.productservice.dto.CartItemDTO;
 import com.shop.productservice.dto.MailDTO;
+import com.shop.productservice.dto.OrderDuplicateDTO;
+import com.shop.productservice.dto.OrderWithProductCartDTO;
 import com.shop.productservice.dto.ProductWithQuantityDTO;
 import com.shop.productservice.dto.StorageDuplicateDTO;
 import com.shop.productservice.model.ImageURL;
@@ -25,7 +28,10 @@ import java.math.BigDecimal;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -125,22 +131,59 @@ class ProductServiceTest {
     @Test
     void getAllProductWithQuantity() {
 //        given
-        when(productRepository.findAll()).thenReturn(Collections.singletonList(product));
+        when(productRepository.findAllById(Set.of(product.getId()))).thenReturn(Collections.singletonList(product));
+        StorageDuplicateDTO storageDuplicateDTO = StorageDuplicateDTO.builder()
+                .productId(product.getId())
+                .quantity(7)
+                .build();
 
 //        when
-        List<ProductWithQuantityDTO> result = productService.getAllProductWithQuantity(Collections.emptyList());
+        List<ProductWithQuantityDTO> result = productService.getAllProductWithQuantity(List.of(storageDuplicateDTO));
 
 //        then
         assertNotNull(result);
         assertEquals(1, result.size());
         assertEquals(product.getId(), result.get(0).getId());
+        assertEquals(7, result.get(0).getQuantity());
+        verify(productRepository, never()).findAll();
+    }
+
+    @Test
+    void groupNameIdentifier() {
+//        given
+        when(productRepository.findAllById(List.of(1L, 2L))).thenReturn(List.of(product));
+        OrderDuplicateDTO firstOrder = OrderDuplicateDTO.builder()
+                .id("order1")
+                .cart(Map.of(1L, 2))
+                .build();
+        OrderDuplicateDTO secondOrder = OrderDuplicateDTO.builder()
+                .id("order2")
+                .cart(new LinkedHashMap<>(Map.of(1L, 1)))
+                .build();
+        secondOrder.getCart().put(2L, 3);
+
+//        when
+        List<OrderWithProductCartDTO> result = productService.groupNameIdentifier(List.of(firstOrder, secondOrder));
+
+//        then
+        verify(productRepository, times(1)).findAllById(anyList());
+        assertEquals(2, result.size());
+        assertEquals(List.of(CartItemDTO.builder()
+                .productId(1L)
+                .quantity(2)
+                .unitPrice(product.getCost())
+                .build()), result.get(0).getCart());
+        assertEquals(Set.of(1L), result.get(0).getProducts().keySet());
+        assertEquals(2, result.get(1).getCart().size());
+        assertNull(result.get(1).getCart().get(1).getUnitPrice());
+        assertEquals(Set.of(1L), result.get(1).getProducts().keySet());
     }
 
     @Test
     void productVerification() {
 //        given
         StorageDuplicateDTO storageDuplicateDTO = new StorageDuplicateDTO();
-        storageDuplicateDTO.setCustomerId("1L");
+        storageDuplicateDTO.setProductId(1L);
         storageDuplicateDTO.setQuantity(10);
         ArgumentCaptor<MailDTO> mailDTOCaptor = ArgumentCaptor.forClass(MailDTO.class);
 
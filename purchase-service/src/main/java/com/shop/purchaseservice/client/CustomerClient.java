@@ -5,6 +5,9 @@ import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+
+import java.util.List;
 
 @FeignClient(name = "customer-service", url = "${url.customerClient}")
 public interface CustomerClient {
@@ -12,8 +15,8 @@ public interface CustomerClient {
     @GetMapping("api/v1/customer/find/customerDTO/{customerId}")
     CustomerDTO findCustomerEmailAndNameById(@PathVariable String customerId);
 
-    @PutMapping("api/v1/customer/clean/cart/{id}")
-    void cleanCart(@PathVariable String id);
+    @PutMapping("api/v1/customer/remove/cart/{id}")
+    void removeFromCart(@PathVariable String id, @RequestBody List<Long> listProductId);
 
 
 }
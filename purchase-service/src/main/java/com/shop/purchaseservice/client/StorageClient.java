@@ -1,22 +1,20 @@
 package com.shop.purchaseservice.client;
 
-import com.shop.purchaseservice.dto.ProductDuplicateDTO;
+import com.shop.purchaseservice.dto.InventoryStatusDTO;
+import com.shop.purchaseservice.dto.OrderWithProductCartDTO;
 import org.springframework.cloud.openfeign.FeignClient;
-import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestParam;
-
-import java.util.Map;
 
 
 @FeignClient(name = "storage-service", url = "${url.storageClient}")
 public interface StorageClient {
 
-    @PostMapping("api/v1/storage/order-check")
-    Boolean isOrderInStorage(@RequestBody Map<ProductDuplicateDTO, Integer> cart);
+    @PostMapping("api/v1/storage/reservation/reserve")
+    InventoryStatusDTO reserve(@RequestBody OrderWithProductCartDTO orderWithProductCartDTO);
 
-    @GetMapping("api/v1/storage/find/order/out")
-    Map<ProductDuplicateDTO, Integer> findOutOfStorageProduct(
-            @RequestBody Map<ProductDuplicateDTO, Integer> cart, @RequestParam String customerId);
+    @PutMapping("api/v1/storage/reservation/release/{orderId}")
+    void release(@PathVariable String orderId);
 }
@@ -0,0 +1,28 @@
+package com.shop.purchaseservice.configuration;
+
+import com.shop.purchaseservice.service.PurchaseStatusEmitters;
+import com.shop.purchaseservice.service.PurchaseStatusStore;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+@Configuration
+public class RedisConfig {
+
+    @Bean
+    public RedisMessageListenerContainer purchaseStatusListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                         PurchaseStatusStore purchaseStatusStore,
+                                                                         PurchaseStatusEmitters purchaseStatusEmitters) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> purchaseStatusEmitters.publish(purchaseStatusStore.read(
+                        new String(message.getBody(), StandardCharsets.UTF_8))),
+                new ChannelTopic(PurchaseStatusStore.STATUS_CHANNEL));
+        return container;
+    }
+}
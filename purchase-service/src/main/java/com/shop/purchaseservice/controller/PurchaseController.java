@@ -3,13 +3,21 @@ package com.shop.purchaseservice.controller;
 
 import com.shop.purchaseservice.dto.InventoryStatusDTO;
 import com.shop.purchaseservice.dto.OrderWithProductCartDTO;
+import com.shop.purchaseservice.dto.PurchaseStatusDTO;
+import com.shop.purchaseservice.service.AsyncPurchaseService;
+import com.shop.purchaseservice.service.IdempotencyService;
 import com.shop.purchaseservice.service.PurchaseService;
+import com.shop.purchaseservice.service.PurchaseStatusEmitters;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestBody;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.net.URI;
 
 
 @RestController
@@ -18,14 +26,56 @@ import org.springframework.web.bind.annotation.RestController;
 public class PurchaseController {
 
     private final PurchaseService service;
+    private final AsyncPurchaseService asyncService;
+    private final PurchaseStatusEmitters statusEmitters;
+    private final IdempotencyService idempotencyService;
+
+    @Value("${purchase.retry-after}")
+    private Long retryAfter;
 
     @PostMapping(value = "operation", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public InventoryStatusDTO purchase(@RequestBody OrderWithProductCartDTO orderDuplicateDTO) {
-        return service.purchase(orderDuplicateDTO);
+    public ResponseEntity<InventoryStatusDTO> purchase(@RequestBody OrderWithProductCartDTO orderDuplicateDTO,
+                                                       @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        InventoryStatusDTO inventoryStatusDTO = idempotencyKey == null
+                ? service.purchase(orderDuplicateDTO)
+                : idempotencyService.execute(idempotencyKey, () -> service.purchase(orderDuplicateDTO));
+        if (inventoryStatusDTO == null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                    .build();
+        }
+        return ResponseEntity.ok(inventoryStatusDTO);
+    }
+
+    @PostMapping(value = "operation/async", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<PurchaseStatusDTO> purchaseAsync(@RequestBody OrderWithProductCartDTO orderDuplicateDTO) {
+        if (!asyncService.isValid(orderDuplicateDTO)) {
+            return ResponseEntity.badRequest().build();
+        }
+        PurchaseStatusDTO purchaseStatusDTO = asyncService.submit(orderDuplicateDTO);
+        if (purchaseStatusDTO == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                    .build();
+        }
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/purchase/status/" + purchaseStatusDTO.getToken()))
+                .body(purchaseStatusDTO);
+    }
+
+    @GetMapping("status/{token}")
+    public ResponseEntity<PurchaseStatusDTO> findStatus(@PathVariable String token) {
+        PurchaseStatusDTO purchaseStatusDTO = asyncService.findStatus(token);
+        return purchaseStatusDTO == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(purchaseStatusDTO);
+    }
+
+    @GetMapping(value = "status/{token}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStatus(@PathVariable String token) {
+        return statusEmitters.open(token);
     }
 
     @PostMapping(value = "mail/send", consumes = MediaType.APPLICATION_JSON_VALUE)
     public void purchaseMailSend(@RequestBody OrderWithProductCartDTO orderDuplicateDTO) {
         service.purchaseMailSend(orderDuplicateDTO);
     }
-}
\ No newline at end of file
+}
@@ -5,7 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.Map;
+import java.util.List;
 
 @Data
 @Builder
@@ -14,7 +14,7 @@ import java.util.Map;
 public class InventoryStatusDTO {
 
     public Boolean isOrderInStorage;
-    private Map<ProductDuplicateDTO, Integer> outOfStorageProducts;
+    private List<CartItemDTO> outOfStorageProducts;
 
 
 }
@@ -1,11 +1,13 @@
 package com.shop.purchaseservice.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.util.List;
 import java.util.Map;
 
 @NoArgsConstructor
@@ -16,7 +18,10 @@ public class OrderWithProductCartDTO {
 
     private String id;
     private String customerId;
-    private Map<ProductDuplicateDTO, Integer> cart;
+    private List<CartItemDTO> cart;
     private BigDecimal cost;
+    // descriptions of the products in the cart by product id, only needed for the mail
+    @JsonInclude(JsonInclude.Include.NON_EMPTY)
+    private Map<Long, ProductDuplicateDTO> products;
 
 }
\ No newline at end of file
@@ -0,0 +1,21 @@
+package com.shop.purchaseservice.dto;
+
+import com.shop.purchaseservice.enums.PurchaseStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PurchaseStatusDTO {
+
+    private String token;
+    private String orderId;
+    private PurchaseStatus status;
+    private List<Long> listOutOfStorageId;
+}
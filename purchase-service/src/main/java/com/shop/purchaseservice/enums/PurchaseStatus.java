@@ -0,0 +1,13 @@
+package com.shop.purchaseservice.enums;
+
+public enum PurchaseStatus {
+    PENDING,
+    RESERVED,
+    CONFIRMED,
+    REJECTED,
+    FAILED;
+
+    public boolean isFinal() {
+        return this == CONFIRMED || this == REJECTED || this == FAILED;
+    }
+}
@@ -0,0 +1,8 @@
+package com.shop.purchaseservice.enums;
+
+public enum SagaState {
+    // the stock reservation and the cart cleaning are running; a failure is compensated
+    STARTED,
+    // the order is in the outbox; the remaining steps are retried until done
+    PUBLISHED
+}
@@ -0,0 +1,11 @@
+package com.shop.purchaseservice.enums;
+
+public enum SagaStep {
+    STOCK_RESERVED,
+    CART_CLEANED,
+    MAIL_SENT;
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+}
@@ -0,0 +1,19 @@
+package com.shop.purchaseservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class OutboxEvent {
+
+    private Long id;
+    private String topic;
+    private String messageKey;
+    // serialized to JSON when appended; read back as the JSON string
+    private Object payload;
+}
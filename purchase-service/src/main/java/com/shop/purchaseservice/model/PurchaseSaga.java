@@ -0,0 +1,25 @@
+package com.shop.purchaseservice.model;
+
+import com.shop.purchaseservice.dto.OrderWithProductCartDTO;
+import com.shop.purchaseservice.enums.SagaState;
+import com.shop.purchaseservice.enums.SagaStep;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PurchaseSaga {
+
+    private SagaState state;
+    // completed steps, one bit per SagaStep
+    private int steps;
+    private OrderWithProductCartDTO order;
+
+    public boolean isDone(SagaStep step) {
+        return (steps & step.bit()) != 0;
+    }
+}
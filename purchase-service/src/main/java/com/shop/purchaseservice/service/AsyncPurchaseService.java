@@ -0,0 +1,157 @@
+package com.shop.purchaseservice.service;
+
+import com.shop.purchaseservice.dto.*;
+import com.shop.purchaseservice.enums.PurchaseStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+/**
+ * Accepts purchases into a bounded in-process queue and runs them in the background. The queue is split into
+ * {@code purchase.queue.partitions} partitions of {@code purchase.queue.capacity} orders, each drained by one
+ * thread, and the purchases of a customer always go to the same partition, so they run in the order they were
+ * accepted. A purchase that finds its partition full is refused instead of waiting. At most one purchase per
+ * partition runs at a time, and each holds its thread while it waits on the storage service, so a slow storage
+ * service caps throughput at {@code purchase.queue.partitions} purchases per reservation round trip. On
+ * shutdown the queued purchases get {@code purchase.queue.shutdown-timeout} milliseconds to finish; those still
+ * waiting after that are marked failed instead of staying pending.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AsyncPurchaseService {
+
+    private final PurchaseService purchaseService;
+    private final PurchaseStatusStore purchaseStatusStore;
+
+    @Value("${purchase.queue.partitions}")
+    private Integer partitions;
+
+    @Value("${purchase.queue.capacity}")
+    private Integer capacity;
+
+    @Value("${purchase.queue.shutdown-timeout}")
+    private Long shutdownTimeout;
+
+    private final List<ExecutorService> partitionExecutors = new ArrayList<>();
+
+    @PostConstruct
+    public void start() {
+        for (int partition = 0; partition < partitions; partition++) {
+            partitionExecutors.add(new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(capacity)));
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        partitionExecutors.forEach(ExecutorService::shutdown);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(shutdownTimeout);
+        try {
+            for (ExecutorService executor : partitionExecutors) {
+                executor.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // a running purchase that is interrupted fails or is compensated like any other, and its saga is
+        // recovered if it was past the point of no return
+        for (ExecutorService executor : partitionExecutors) {
+            for (Runnable queued : executor.shutdownNow()) {
+                QueuedPurchase purchase = (QueuedPurchase) queued;
+                log.warn("Purchase queue stopped, failed order ID: {}", purchase.order.getId());
+                purchaseStatusStore.save(status(purchase.token, purchase.order, PurchaseStatus.FAILED, null));
+            }
+        }
+    }
+
+    public boolean isValid(OrderWithProductCartDTO orderWithProductCartDTO) {
+        return orderWithProductCartDTO.getCustomerId() != null
+                && orderWithProductCartDTO.getCart() != null
+                && !orderWithProductCartDTO.getCart().isEmpty()
+                && orderWithProductCartDTO.getCost() != null
+                && orderWithProductCartDTO.getCost().compareTo(BigDecimal.ZERO) >= 0;
+    }
+
+    // returns null when the partition of the customer is full
+    public PurchaseStatusDTO submit(OrderWithProductCartDTO orderWithProductCartDTO) {
+        String token = UUID.randomUUID().toString();
+        if (orderWithProductCartDTO.getId() == null) {
+            orderWithProductCartDTO.setId(OrderIds.next());
+        }
+        PurchaseStatusDTO pending = status(token, orderWithProductCartDTO, PurchaseStatus.PENDING, null);
+        purchaseStatusStore.save(pending);
+
+        ExecutorService executor = partitionExecutors.get(
+                Math.floorMod(orderWithProductCartDTO.getCustomerId().hashCode(), partitionExecutors.size()));
+        try {
+            executor.execute(new QueuedPurchase(token, orderWithProductCartDTO));
+        } catch (RejectedExecutionException e) {
+            log.warn("Purchase queue is full, refused order ID: {}", orderWithProductCartDTO.getId());
+            purchaseStatusStore.save(status(token, orderWithProductCartDTO, PurchaseStatus.FAILED, null));
+            return null;
+        }
+        log.info("Accepted order ID: {} with token: {}", orderWithProductCartDTO.getId(), token);
+        return pending;
+    }
+
+    public PurchaseStatusDTO findStatus(String token) {
+        return purchaseStatusStore.find(token);
+    }
+
+    private void process(String token, OrderWithProductCartDTO orderWithProductCartDTO) {
+        try {
+            InventoryStatusDTO inventoryStatusDTO = purchaseService.purchase(orderWithProductCartDTO, () ->
+                    purchaseStatusStore.save(status(token, orderWithProductCartDTO, PurchaseStatus.RESERVED, null)));
+            if (inventoryStatusDTO == null) {
+                log.warn("Purchase of order ID: {} is already running", orderWithProductCartDTO.getId());
+                purchaseStatusStore.save(status(token, orderWithProductCartDTO, PurchaseStatus.FAILED, null));
+            } else if (inventoryStatusDTO.getIsOrderInStorage()) {
+                purchaseStatusStore.save(status(token, orderWithProductCartDTO, PurchaseStatus.CONFIRMED, null));
+            } else {
+                List<Long> listOutOfStorageId = new ArrayList<>();
+                for (CartItemDTO item : inventoryStatusDTO.getOutOfStorageProducts()) {
+                    listOutOfStorageId.add(item.getProductId());
+                }
+                purchaseStatusStore.save(status(token, orderWithProductCartDTO, PurchaseStatus.REJECTED,
+                        listOutOfStorageId));
+            }
+        } catch (RuntimeException e) {
+            log.error("Purchase failed for order ID: {}", orderWithProductCartDTO.getId(), e);
+            purchaseStatusStore.save(status(token, orderWithProductCartDTO, PurchaseStatus.FAILED, null));
+        }
+    }
+
+    // kept as its own type so that the purchases still queued at shutdown can be told apart
+    @RequiredArgsConstructor
+    private class QueuedPurchase implements Runnable {
+
+        private final String token;
+        private final OrderWithProductCartDTO order;
+
+        @Override
+        public void run() {
+            process(token, order);
+        }
+    }
+
+    private PurchaseStatusDTO status(String token, OrderWithProductCartDTO orderWithProductCartDTO,
+                                     PurchaseStatus status, List<Long> listOutOfStorageId) {
+        return PurchaseStatusDTO.builder()
+                .token(token)
+                .orderId(orderWithProductCartDTO.getId())
+                .status(status)
+                .listOutOfStorageId(listOutOfStorageId)
+                .build();
+    }
+}
@@ -0,0 +1,139 @@
+package com.shop.purchaseservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shop.purchaseservice.dto.InventoryStatusDTO;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs a purchase at most once per {@code Idempotency-Key} and answers repeats with its original result. Results
+ * are kept in Redis for {@code purchase.idempotency.time-to-live} milliseconds, with the
+ * {@code purchase.idempotency.local-size} most recent ones also in memory, so a retry costs a local lookup. Repeats
+ * that arrive while the purchase is running wait for it on this instance; on another instance the key is claimed
+ * in Redis, and the repeat is refused until the result is there.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+
+    private static final String KEY_PREFIX = "purchase:idempotency:";
+    private static final String IN_PROGRESS = "IN_PROGRESS";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${purchase.idempotency.time-to-live}")
+    private Long timeToLive;
+
+    @Value("${purchase.idempotency.claim-timeout}")
+    private Long claimTimeout;
+
+    @Value("${purchase.idempotency.local-size}")
+    private Long localSize;
+
+    private Cache<String, InventoryStatusDTO> localResults;
+    private final Map<String, CompletableFuture<InventoryStatusDTO>> inFlight = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        localResults = Caffeine.newBuilder()
+                .maximumSize(localSize)
+                .expireAfterWrite(Duration.ofMillis(timeToLive))
+                .build();
+    }
+
+    // returns null when the key is being processed by another instance, or the purchase itself returned null
+    public InventoryStatusDTO execute(String idempotencyKey, Supplier<InventoryStatusDTO> purchase) {
+        InventoryStatusDTO result = localResults.getIfPresent(idempotencyKey);
+        if (result != null) {
+            log.info("Repeated purchase with idempotency key: {} answered from memory", idempotencyKey);
+            return result;
+        }
+
+        CompletableFuture<InventoryStatusDTO> execution = new CompletableFuture<>();
+        CompletableFuture<InventoryStatusDTO> running = inFlight.putIfAbsent(idempotencyKey, execution);
+        if (running != null) {
+            log.info("Repeated purchase with idempotency key: {} joined the running one", idempotencyKey);
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+
+        try {
+            result = executeOnce(idempotencyKey, purchase);
+            execution.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            execution.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(idempotencyKey, execution);
+        }
+    }
+
+    private InventoryStatusDTO executeOnce(String idempotencyKey, Supplier<InventoryStatusDTO> purchase) {
+        String key = KEY_PREFIX + idempotencyKey;
+        Boolean claimed = redisTemplate.opsForValue().setIfAbsent(key, IN_PROGRESS, Duration.ofMillis(claimTimeout));
+        if (!Boolean.TRUE.equals(claimed)) {
+            String stored = redisTemplate.opsForValue().get(key);
+            if (stored == null || IN_PROGRESS.equals(stored)) {
+                log.warn("Purchase with idempotency key: {} is running on another instance", idempotencyKey);
+                return null;
+            }
+            InventoryStatusDTO result = read(stored);
+            localResults.put(idempotencyKey, result);
+            log.info("Repeated purchase with idempotency key: {} answered from Redis", idempotencyKey);
+            return result;
+        }
+
+        InventoryStatusDTO result;
+        try {
+            result = purchase.get();
+        } catch (RuntimeException e) {
+            // a failed purchase was compensated, so a retry with the same key may run it again
+            redisTemplate.delete(key);
+            throw e;
+        }
+        if (result == null) {
+            // the order is being purchased under another key, so there is no result to keep yet
+            redisTemplate.delete(key);
+            return null;
+        }
+        redisTemplate.opsForValue().set(key, write(result), Duration.ofMillis(timeToLive));
+        localResults.put(idempotencyKey, result);
+        return result;
+    }
+
+    private String write(InventoryStatusDTO inventoryStatusDTO) {
+        try {
+            return objectMapper.writeValueAsString(inventoryStatusDTO);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unwritable purchase result: " + inventoryStatusDTO, e);
+        }
+    }
+
+    private InventoryStatusDTO read(String stored) {
+        try {
+            return objectMapper.readValue(stored, InventoryStatusDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable purchase result: " + stored, e);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.shop.purchaseservice.service;
+
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IDs for orders that arrive without one. customer-service saves orders under a MongoDB ObjectId, so the IDs
+ * have its layout: 4 bytes of seconds since the epoch, 5 random bytes fixed per process and a 3 byte counter,
+ * written as 24 hex digits.
+ */
+final class OrderIds {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final long PROCESS_ID = RANDOM.nextLong() & 0xFF_FFFF_FFFFL;
+    private static final AtomicInteger COUNTER = new AtomicInteger(RANDOM.nextInt());
+
+    private OrderIds() {
+    }
+
+    static String next() {
+        return String.format("%08x%010x%06x", Instant.now().getEpochSecond() & 0xFFFF_FFFFL, PROCESS_ID,
+                COUNTER.getAndIncrement() & 0xFF_FFFF);
+    }
+}
@@ -0,0 +1,105 @@
+package com.shop.purchaseservice.service;
+
+import com.shop.purchaseservice.model.OutboxEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publishes the outbox every {@code outbox.relay-delay} milliseconds in batches of {@code outbox.batch-size}
+ * events. A batch is sent without waiting between events and then acknowledged in outbox order; the events
+ * before the first one that was not acknowledged are deleted, and that one stays with all after it for the next
+ * run, so an event is never deleted while an earlier one may still be sent again. Delivery is at least once: the
+ * producer is idempotent, so its own retries add no duplicates, but an event whose acknowledgement is lost, or
+ * that follows one, is sent again.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxRelay {
+
+    private final OutboxService outboxService;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${outbox.batch-size}")
+    private Integer batchSize;
+
+    @Value("${outbox.send-timeout}")
+    private Long sendTimeout;
+
+    @Scheduled(fixedDelayString = "${outbox.relay-delay}")
+    public void relay() {
+        List<OutboxEvent> events;
+        do {
+            events = outboxService.findBatch(batchSize);
+            if (events.isEmpty()) {
+                return;
+            }
+            if (!publish(events)) {
+                return;
+            }
+        } while (events.size() == batchSize);
+    }
+
+    // the send latency is measured up to the acknowledgement, by topic and outcome
+    private CompletableFuture<SendResult<String, String>> send(OutboxEvent event) {
+        String payload = (String) event.getPayload();
+        DistributionSummary.builder("purchase.kafka.record.size")
+                .baseUnit("bytes")
+                .tag("topic", event.getTopic())
+                .register(meterRegistry)
+                .record(payload.getBytes(StandardCharsets.UTF_8).length);
+        long start = System.nanoTime();
+        return kafkaTemplate.send(event.getTopic(), event.getMessageKey(), payload)
+                .whenComplete((result, e) -> Timer.builder("purchase.kafka.send")
+                        .tag("topic", event.getTopic())
+                        .tag("outcome", e == null ? "success" : "failure")
+                        .register(meterRegistry)
+                        .record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+    }
+
+    // returns false when an event was not acknowledged, so the relay waits for its next run
+    private boolean publish(List<OutboxEvent> events) {
+        List<CompletableFuture<SendResult<String, String>>> futures = new ArrayList<>();
+        for (OutboxEvent event : events) {
+            futures.add(send(event));
+        }
+        kafkaTemplate.flush();
+
+        List<Long> published = new ArrayList<>();
+        for (int i = 0; i < events.size(); i++) {
+            try {
+                futures.get(i).get(sendTimeout, TimeUnit.MILLISECONDS);
+                published.add(events.get(i).getId());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn("Outbox event ID: {} to topic: {} not published: {}", events.get(i).getId(),
+                        events.get(i).getTopic(), e.getMessage());
+                break;
+            }
+        }
+        if (!published.isEmpty()) {
+            outboxService.deleteAll(published);
+        }
+        log.info("Published {} of {} outbox events", published.size(), events.size());
+        return published.size() == events.size();
+    }
+}
@@ -0,0 +1,63 @@
+package com.shop.purchaseservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.purchaseservice.model.OutboxEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Kafka events waiting in the local outbox table until {@link OutboxRelay} has published them. The events of a
+ * purchase are appended in one transaction, so either all of them are published or none.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Transactional
+    public void append(List<OutboxEvent> events) {
+        List<Object[]> batchArgs = new ArrayList<>();
+        for (OutboxEvent event : events) {
+            batchArgs.add(new Object[]{event.getTopic(), event.getMessageKey(), write(event.getPayload())});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO outbox_event (topic, message_key, payload) VALUES (?, ?, ?)", batchArgs);
+        log.info("Appended {} events to outbox", events.size());
+    }
+
+    public List<OutboxEvent> findBatch(int batchSize) {
+        return jdbcTemplate.query("SELECT id, topic, message_key, payload FROM outbox_event ORDER BY id LIMIT ?",
+                (rs, rowNum) -> OutboxEvent.builder()
+                        .id(rs.getLong(1))
+                        .topic(rs.getString(2))
+                        .messageKey(rs.getString(3))
+                        .payload(rs.getString(4))
+                        .build(),
+                batchSize);
+    }
+
+    public void deleteAll(List<Long> listId) {
+        List<Object[]> batchArgs = new ArrayList<>();
+        for (Long id : listId) {
+            batchArgs.add(new Object[]{id});
+        }
+        jdbcTemplate.batchUpdate("DELETE FROM outbox_event WHERE id = ?", batchArgs);
+    }
+
+    private String write(Object payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unwritable outbox payload: " + payload, e);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.shop.purchaseservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.purchaseservice.dto.OrderWithProductCartDTO;
+import com.shop.purchaseservice.enums.SagaState;
+import com.shop.purchaseservice.enums.SagaStep;
+import com.shop.purchaseservice.model.PurchaseSaga;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Purchase sagas that are still in flight, one row per order: its state, a bit mask of the completed steps and
+ * the order itself, which the compensations and the remaining steps need. A saga is deleted once it is completed
+ * or compensated, so the table only ever holds the sagas that recovery has to look at.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PurchaseSagaStore {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    // returns false when a saga of the order is already in flight
+    public boolean start(OrderWithProductCartDTO orderWithProductCartDTO) {
+        try {
+            jdbcTemplate.update("INSERT INTO purchase_saga (order_id, state, steps, payload) VALUES (?, ?, 0, ?)",
+                    orderWithProductCartDTO.getId(), SagaState.STARTED.name(), write(orderWithProductCartDTO));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    // returns null when the order has no saga in flight
+    public SagaState findState(String orderId) {
+        List<String> states = jdbcTemplate.queryForList("SELECT state FROM purchase_saga WHERE order_id = ?",
+                String.class, orderId);
+        return states.isEmpty() ? null : SagaState.valueOf(states.get(0));
+    }
+
+    public void publish(String orderId) {
+        jdbcTemplate.update("UPDATE purchase_saga SET state = ?, updated_at = CURRENT_TIMESTAMP WHERE order_id = ?",
+                SagaState.PUBLISHED.name(), orderId);
+    }
+
+    // returns the steps completed so far, or null when the saga is gone
+    public Integer markDone(String orderId, SagaStep step) {
+        jdbcTemplate.update("UPDATE purchase_saga SET steps = BITOR(steps, CAST(? AS INT)), updated_at = CURRENT_TIMESTAMP " +
+                "WHERE order_id = ?", step.bit(), orderId);
+        List<Integer> steps = jdbcTemplate.queryForList("SELECT steps FROM purchase_saga WHERE order_id = ?",
+                Integer.class, orderId);
+        return steps.isEmpty() ? null : steps.get(0);
+    }
+
+    public void delete(String orderId) {
+        jdbcTemplate.update("DELETE FROM purchase_saga WHERE order_id = ?", orderId);
+    }
+
+    public List<PurchaseSaga> findAllUpdatedBefore(LocalDateTime updatedBefore) {
+        return jdbcTemplate.query("SELECT state, steps, payload FROM purchase_saga WHERE updated_at < ?",
+                (rs, rowNum) -> PurchaseSaga.builder()
+                        .state(SagaState.valueOf(rs.getString(1)))
+                        .steps(rs.getInt(2))
+                        .order(read(rs.getString(3)))
+                        .build(),
+                Timestamp.valueOf(updatedBefore));
+    }
+
+    private String write(OrderWithProductCartDTO orderWithProductCartDTO) {
+        try {
+            return objectMapper.writeValueAsString(orderWithProductCartDTO);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unwritable order ID: " + orderWithProductCartDTO.getId(), e);
+        }
+    }
+
+    private OrderWithProductCartDTO read(String payload) {
+        try {
+            return objectMapper.readValue(payload, OrderWithProductCartDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable saga payload: " + payload, e);
+        }
+    }
+}
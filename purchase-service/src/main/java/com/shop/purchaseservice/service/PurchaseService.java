@@ -3,82 +3,255 @@ package com.shop.purchaseservice.service;
 import com.shop.purchaseservice.client.CustomerClient;
 import com.shop.purchaseservice.client.StorageClient;
 import com.shop.purchaseservice.dto.*;
+import com.shop.purchaseservice.enums.SagaState;
+import com.shop.purchaseservice.enums.SagaStep;
+import com.shop.purchaseservice.model.OutboxEvent;
+import com.shop.purchaseservice.model.PurchaseSaga;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
 
+/**
+ * Orchestrates a purchase as a saga. If the stock reservation fails or finds the order out of stock, the
+ * reservation is compensated by releasing the stock. Appending the order to the outbox is the point of no return:
+ * only then is the cart cleaned, and the cleaning and the mail are retried until done instead of being
+ * compensated. The saga state is stored at every step, and sagas that have not moved for
+ * {@code purchase.saga.stale-after} milliseconds, including those interrupted by a restart, are picked up by
+ * recovery.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PurchaseService {
 
+    private static final int ALL_STEPS = SagaStep.STOCK_RESERVED.bit() | SagaStep.CART_CLEANED.bit()
+            | SagaStep.MAIL_SENT.bit();
+
     private final StorageClient storageClient;
-    private final KafkaTemplate<String, OrderWithProductCartDTO> kafkaAddOrder;
-    private final KafkaTemplate<String, MailDTO> kafkaMail;
     private final CustomerClient customerClient;
-    private final KafkaTemplate<String, SaleDuplicateDTO> kafkaSale;
+    private final OutboxService outboxService;
+    private final PurchaseSagaStore sagaStore;
+    private final TransactionTemplate transactionTemplate;
+    private final AsyncTaskExecutor taskExecutor;
+
+    @Value("${purchase.step-timeout}")
+    private Long stepTimeout;
 
-    @Transactional
+    @Value("${purchase.saga.stale-after}")
+    private Long staleAfter;
+
+    // returns null when a purchase of the same order ID is still running
     public InventoryStatusDTO purchase(OrderWithProductCartDTO orderWithProductCartDTO) {
+        return purchase(orderWithProductCartDTO, () -> {
+        });
+    }
+
+    // onReserved runs once the stock is reserved, before the order is appended to the outbox
+    public InventoryStatusDTO purchase(OrderWithProductCartDTO orderWithProductCartDTO, Runnable onReserved) {
         log.info("Processing purchase for order: {}", orderWithProductCartDTO);
-        InventoryStatusDTO inventoryStatusDTO = new InventoryStatusDTO();
+        if (orderWithProductCartDTO.getId() == null) {
+            orderWithProductCartDTO.setId(OrderIds.next());
+        }
+        String orderId = orderWithProductCartDTO.getId();
+        if (!sagaStore.start(orderWithProductCartDTO)) {
+            return alreadyStarted(orderId);
+        }
 
-        if (storageClient.isOrderInStorage(orderWithProductCartDTO.getCart())) {
+        CompletableFuture<InventoryStatusDTO> reservation = CompletableFuture
+                .supplyAsync(() -> storageClient.reserve(withoutProducts(orderWithProductCartDTO)), taskExecutor);
 
-            purchaseLogicIfOrderInStorage(orderWithProductCartDTO);
-
-            inventoryStatusDTO.setIsOrderInStorage(true);
-            log.info("Inventory status updated: {}", inventoryStatusDTO);
+        InventoryStatusDTO inventoryStatusDTO = null;
+        RuntimeException failure = null;
+        try {
+            inventoryStatusDTO = reservation.get(stepTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = new IllegalStateException("Interrupted while reserving order ID: " + orderId, e);
+        } catch (ExecutionException e) {
+            failure = e.getCause() instanceof RuntimeException cause
+                    ? cause
+                    : new IllegalStateException("Failed to reserve order ID: " + orderId, e);
+        } catch (TimeoutException e) {
+            failure = new IllegalStateException("Timed out reserving order ID: " + orderId, e);
+        }
+        if (failure != null) {
+            // the reservation may have been made even though it failed here, so it is released
+            compensate(orderWithProductCartDTO, true);
+            throw failure;
+        }
 
-        } else {
+        if (!inventoryStatusDTO.getIsOrderInStorage()) {
+            log.warn("Order is not in storage, out of storage products: {}", inventoryStatusDTO.getOutOfStorageProducts());
+            compensate(orderWithProductCartDTO, false);
+            return inventoryStatusDTO;
+        }
+        sagaStore.markDone(orderId, SagaStep.STOCK_RESERVED);
 
-            inventoryStatusDTO.setOutOfStorageProducts(purchaseLogicIfOrderNotInStorage(orderWithProductCartDTO));
-            inventoryStatusDTO.setIsOrderInStorage(false);
+        try {
+            onReserved.run();
+            purchaseLogicIfOrderInStorage(orderWithProductCartDTO);
+        } catch (RuntimeException e) {
+            log.error("Purchase failed for order ID: {}, compensating", orderId, e);
+            compensate(orderWithProductCartDTO, true);
+            throw e;
         }
+        log.info("Inventory status updated: {}", inventoryStatusDTO);
+        // the cart is only cleaned once the order will be published, so a purchase that is rolled back never
+        // touches it
+        runStep(SagaStep.CART_CLEANED, orderWithProductCartDTO, () -> cleanCart(orderWithProductCartDTO));
+        runStep(SagaStep.MAIL_SENT, orderWithProductCartDTO, () -> purchaseMailSend(orderWithProductCartDTO));
         return inventoryStatusDTO;
     }
 
-    public void purchaseLogicIfOrderInStorage(OrderWithProductCartDTO orderWithProductCartDTO) {
-        log.info("Order is in storage, sending to Kafka topic.");
-        kafkaAddOrder.send("order-topic", orderWithProductCartDTO);
-        purchaseMailSend(orderWithProductCartDTO);
-        customerClient.cleanCart(orderWithProductCartDTO.getCustomerId());
+    // a repeated order ID is answered from the saga already in flight instead of purchasing again. A published
+    // saga has its stock reserved and its order appended to the outbox; any other is still running
+    private InventoryStatusDTO alreadyStarted(String orderId) {
+        SagaState state = sagaStore.findState(orderId);
+        log.warn("Purchase of order ID: {} was already started, saga state: {}", orderId, state);
+        if (state != SagaState.PUBLISHED) {
+            return null;
+        }
+        return InventoryStatusDTO.builder()
+                .isOrderInStorage(true)
+                .outOfStorageProducts(List.of())
+                .build();
+    }
 
+    // the order and the sale are appended to the outbox together with the saga state change, so the saga is
+    // past its point of no return exactly when the order will be published. Events are keyed by customer, so the
+    // events of a customer stay in order on one partition
+    public void purchaseLogicIfOrderInStorage(OrderWithProductCartDTO orderWithProductCartDTO) {
+        log.info("Order is in storage, appending to outbox.");
+        List<OutboxEvent> events = new ArrayList<>();
+        events.add(OutboxEvent.builder()
+                .topic("order-topic")
+                .messageKey(orderWithProductCartDTO.getCustomerId())
+                .payload(withoutProducts(orderWithProductCartDTO))
+                .build());
         if (orderWithProductCartDTO.getCost().compareTo(new BigDecimal("500.0")) > 0) {
             SaleDuplicateDTO saleDuplicateDTO = SaleDuplicateDTO.builder()
                     .sale(new BigDecimal("0.05"))
                     .customerId(orderWithProductCartDTO.getCustomerId())
                     .build();
-            kafkaSale.send("sale-topic", saleDuplicateDTO);
-            log.info("Sale sent to Kafka for customerId {}: {}", orderWithProductCartDTO.getCustomerId(), saleDuplicateDTO);
+            events.add(OutboxEvent.builder()
+                    .topic("sale-topic")
+                    .messageKey(orderWithProductCartDTO.getCustomerId())
+                    .payload(saleDuplicateDTO)
+                    .build());
+            log.info("Sale for customerId {}: {}", orderWithProductCartDTO.getCustomerId(), saleDuplicateDTO);
         }
+        transactionTemplate.executeWithoutResult(status -> {
+            outboxService.append(events);
+            sagaStore.publish(orderWithProductCartDTO.getId());
+        });
+    }
+
+    // storage and the order consumers only need the cart lines, so the product descriptions are not sent on
+    private OrderWithProductCartDTO withoutProducts(OrderWithProductCartDTO orderWithProductCartDTO) {
+        return OrderWithProductCartDTO.builder()
+                .id(orderWithProductCartDTO.getId())
+                .customerId(orderWithProductCartDTO.getCustomerId())
+                .cart(orderWithProductCartDTO.getCart())
+                .cost(orderWithProductCartDTO.getCost())
+                .build();
     }
 
-    public Map<ProductDuplicateDTO, Integer> purchaseLogicIfOrderNotInStorage(OrderWithProductCartDTO orderWithProductCartDTO) {
-        log.warn("Order is not in storage, finding out of stock products.");
-        Map<ProductDuplicateDTO, Integer> outOfStorage = storageClient.findOutOfStorageProduct(
-                orderWithProductCartDTO.getCart(), orderWithProductCartDTO.getCustomerId());
-        log.info("Out of storage products found: {}", outOfStorage);
-        return outOfStorage;
+    @Scheduled(fixedDelayString = "${purchase.saga.recovery-delay}")
+    public void recover() {
+        List<PurchaseSaga> sagas = sagaStore.findAllUpdatedBefore(LocalDateTime.now().minus(Duration.ofMillis(staleAfter)));
+        for (PurchaseSaga saga : sagas) {
+            OrderWithProductCartDTO orderWithProductCartDTO = saga.getOrder();
+            log.info("Recovering {} saga of order ID: {}", saga.getState(), orderWithProductCartDTO.getId());
+            try {
+                if (saga.getState() == SagaState.STARTED) {
+                    compensate(orderWithProductCartDTO, true);
+                    continue;
+                }
+                if (!saga.isDone(SagaStep.CART_CLEANED)) {
+                    runStep(SagaStep.CART_CLEANED, orderWithProductCartDTO, () -> cleanCart(orderWithProductCartDTO));
+                }
+                if (!saga.isDone(SagaStep.MAIL_SENT)) {
+                    runStep(SagaStep.MAIL_SENT, orderWithProductCartDTO, () -> purchaseMailSend(orderWithProductCartDTO));
+                }
+            } catch (RuntimeException e) {
+                log.error("Recovery failed for order ID: {}", orderWithProductCartDTO.getId(), e);
+            }
+        }
+    }
+
+    // the compensation is safe to repeat, since releasing an unknown reservation does nothing. A compensation that
+    // fails leaves the saga for recovery
+    private void compensate(OrderWithProductCartDTO orderWithProductCartDTO, boolean releaseStock) {
+        String orderId = orderWithProductCartDTO.getId();
+        try {
+            if (releaseStock) {
+                storageClient.release(orderId);
+            }
+            sagaStore.delete(orderId);
+            log.info("Compensated purchase of order ID: {}", orderId);
+        } catch (RuntimeException e) {
+            log.error("Compensation failed for order ID: {}, left for recovery", orderId, e);
+        }
+    }
+
+    // a step past the point of no return. The action marks its step done itself and returns the steps done so
+    // far, so a step that finishes after purchase.step-timeout milliseconds is still recorded; the saga is deleted
+    // when its last step is done, and a step that fails is left for recovery
+    private void runStep(SagaStep step, OrderWithProductCartDTO orderWithProductCartDTO, Supplier<Integer> action) {
+        String orderId = orderWithProductCartDTO.getId();
+        CompletableFuture.supplyAsync(() -> {
+                    Integer steps = action.get();
+                    if (steps != null && steps == ALL_STEPS) {
+                        sagaStore.delete(orderId);
+                        log.info("Purchase saga completed for order ID: {}", orderId);
+                    }
+                    return steps;
+                }, taskExecutor)
+                .orTimeout(stepTimeout, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> {
+                    log.error("Step {} failed or timed out for order ID: {}", step, orderId, e);
+                    return null;
+                });
+    }
+
+    // only the products of the order are removed, so the step is safe to repeat and leaves alone what the
+    // customer has added to the cart since
+    private Integer cleanCart(OrderWithProductCartDTO orderWithProductCartDTO) {
+        List<Long> listProductId = new ArrayList<>();
+        for (CartItemDTO item : orderWithProductCartDTO.getCart()) {
+            listProductId.add(item.getProductId());
+        }
+        customerClient.removeFromCart(orderWithProductCartDTO.getCustomerId(), listProductId);
+        return sagaStore.markDone(orderWithProductCartDTO.getId(), SagaStep.CART_CLEANED);
     }
 
-    public void purchaseMailSend(OrderWithProductCartDTO orderWithProductCartDTO) {
+    // the mail is appended to the outbox in the same transaction that marks it sent, so recovery never appends it
+    // twice. Returns the steps of the saga done so far, or null when the order has no saga
+    public Integer purchaseMailSend(OrderWithProductCartDTO orderWithProductCartDTO) {
         log.info("Sending purchase email for order ID: {}", orderWithProductCartDTO.getId());
         String customerId = orderWithProductCartDTO.getCustomerId();
         CustomerDTO customerDTO = customerClient.findCustomerEmailAndNameById(customerId);
         List<String> listOfProducts = new ArrayList<>();
 
-        Map<ProductDuplicateDTO, Integer> cart = orderWithProductCartDTO.getCart();
+        Map<Long, ProductDuplicateDTO> products = orderWithProductCartDTO.getProducts() != null
+                ? orderWithProductCartDTO.getProducts()
+                : Map.of();
 
-        for (Map.Entry<ProductDuplicateDTO, Integer> entry : cart.entrySet()) {
-            listOfProducts.add(entry.getKey().getName());
+        // a product the client sent no description of is named by its ID
+        for (CartItemDTO item : orderWithProductCartDTO.getCart()) {
+            ProductDuplicateDTO product = products.get(item.getProductId());
+            listOfProducts.add(product != null ? product.getName() : String.valueOf(item.getProductId()));
         }
 
         Map<String, Object> data = Map.of(
@@ -94,7 +267,15 @@ public class PurchaseService {
                 .data(data)
                 .build();
 
-        kafkaMail.send("mail-topic", mailDTO);
-        log.info("Mail sent to: {} with data: {}", customerDTO.getEmail(), data);
+        Integer steps = transactionTemplate.execute(status -> {
+            outboxService.append(List.of(OutboxEvent.builder()
+                    .topic("mail-topic")
+                    .messageKey(orderWithProductCartDTO.getCustomerId())
+                    .payload(mailDTO)
+                    .build()));
+            return sagaStore.markDone(orderWithProductCartDTO.getId(), SagaStep.MAIL_SENT);
+        });
+        log.info("Mail appended to outbox for: {} with data: {}", customerDTO.getEmail(), data);
+        return steps;
     }
 }
@@ -0,0 +1,78 @@
+package com.shop.purchaseservice.service;
+
+import com.shop.purchaseservice.dto.PurchaseStatusDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Server-sent event streams of purchase statuses held by this instance. A stream gets the current status,
+ * then every change published by any instance, and is completed with the final status.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PurchaseStatusEmitters {
+
+    private final PurchaseStatusStore purchaseStatusStore;
+
+    private final Map<String, List<SseEmitter>> emittersByToken = new ConcurrentHashMap<>();
+
+    @Value("${purchase.status.stream-timeout}")
+    private Long streamTimeout;
+
+    // the stream is registered before the current status is read, so a change in between is not missed
+    public SseEmitter open(String token) {
+        SseEmitter emitter = new SseEmitter(streamTimeout);
+        emittersByToken.computeIfAbsent(token, key -> new CopyOnWriteArrayList<>()).add(emitter);
+        emitter.onCompletion(() -> remove(token, emitter));
+        emitter.onTimeout(() -> remove(token, emitter));
+        emitter.onError(e -> remove(token, emitter));
+
+        PurchaseStatusDTO purchaseStatusDTO = purchaseStatusStore.find(token);
+        if (purchaseStatusDTO == null) {
+            emitter.complete();
+        } else {
+            send(emitter, purchaseStatusDTO);
+        }
+        return emitter;
+    }
+
+    public void publish(PurchaseStatusDTO purchaseStatusDTO) {
+        List<SseEmitter> emitters = emittersByToken.get(purchaseStatusDTO.getToken());
+        if (emitters != null) {
+            for (SseEmitter emitter : emitters) {
+                send(emitter, purchaseStatusDTO);
+            }
+        }
+    }
+
+    private void send(SseEmitter emitter, PurchaseStatusDTO purchaseStatusDTO) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name("status")
+                    .data(purchaseStatusDTO));
+            if (purchaseStatusDTO.getStatus().isFinal()) {
+                emitter.complete();
+            }
+        } catch (IOException e) {
+            log.warn("Status stream of purchase token: {} closed: {}", purchaseStatusDTO.getToken(), e.getMessage());
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void remove(String token, SseEmitter emitter) {
+        emittersByToken.computeIfPresent(token, (key, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
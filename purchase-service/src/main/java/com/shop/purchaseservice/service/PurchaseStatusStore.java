@@ -0,0 +1,62 @@
+package com.shop.purchaseservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.purchaseservice.dto.PurchaseStatusDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Statuses of asynchronous purchases in Redis, kept for {@code purchase.status.time-to-live} milliseconds so any
+ * instance can answer a status request. Every change is also published on {@link #STATUS_CHANNEL} for the
+ * instances holding status streams of the purchase.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PurchaseStatusStore {
+
+    public static final String STATUS_CHANNEL = "purchase-status";
+
+    private static final String STATUS_KEY_PREFIX = "purchase:status:";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    @Value("${purchase.status.time-to-live}")
+    private Long timeToLive;
+
+    public void save(PurchaseStatusDTO purchaseStatusDTO) {
+        String json = write(purchaseStatusDTO);
+        redisTemplate.opsForValue().set(STATUS_KEY_PREFIX + purchaseStatusDTO.getToken(), json,
+                Duration.ofMillis(timeToLive));
+        redisTemplate.convertAndSend(STATUS_CHANNEL, json);
+        log.info("Purchase status saved: {}", purchaseStatusDTO);
+    }
+
+    public PurchaseStatusDTO find(String token) {
+        String json = redisTemplate.opsForValue().get(STATUS_KEY_PREFIX + token);
+        return json == null ? null : read(json);
+    }
+
+    public PurchaseStatusDTO read(String json) {
+        try {
+            return objectMapper.readValue(json, PurchaseStatusDTO.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unreadable purchase status: " + json, e);
+        }
+    }
+
+    private String write(PurchaseStatusDTO purchaseStatusDTO) {
+        try {
+            return objectMapper.writeValueAsString(purchaseStatusDTO);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unwritable purchase status: " + purchaseStatusDTO, e);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+CREATE TABLE IF NOT EXISTS outbox_event (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    topic VARCHAR(255) NOT NULL,
+    message_key VARCHAR(255),
+    payload CLOB NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS purchase_saga (
+    order_id VARCHAR(64) PRIMARY KEY,
+    state VARCHAR(16) NOT NULL,
+    steps INT NOT NULL,
+    payload CLOB NOT NULL,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL
+);
@@ -2,10 +2,16 @@ package com.shop.purchaseservice;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 
-@SpringBootTest
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:purchase-outbox")
 class PurchaseServiceApplicationTests {
 
+    // the container subscribes on startup, which needs a running Redis
+    @MockBean
+    private RedisMessageListenerContainer purchaseStatusListenerContainer;
+
     @Test
     void contextLoads() {
     }
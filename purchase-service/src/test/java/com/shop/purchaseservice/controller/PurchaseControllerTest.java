@@ -3,7 +3,12 @@ package com.shop.purchaseservice.controller;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.shop.purchaseservice.dto.InventoryStatusDTO;
 import com.shop.purchaseservice.dto.OrderWithProductCartDTO;
+import com.shop.purchaseservice.dto.PurchaseStatusDTO;
+import com.shop.purchaseservice.enums.PurchaseStatus;
+import com.shop.purchaseservice.service.AsyncPurchaseService;
+import com.shop.purchaseservice.service.IdempotencyService;
 import com.shop.purchaseservice.service.PurchaseService;
+import com.shop.purchaseservice.service.PurchaseStatusEmitters;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -11,13 +16,17 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.math.BigDecimal;
 
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,6 +37,15 @@ class PurchaseControllerTest {
     @MockBean
     private PurchaseService service;
 
+    @MockBean
+    private AsyncPurchaseService asyncService;
+
+    @MockBean
+    private PurchaseStatusEmitters statusEmitters;
+
+    @MockBean
+    private IdempotencyService idempotencyService;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -45,11 +63,10 @@ class PurchaseControllerTest {
     @Test
     void testPurchaseOperation() throws Exception {
 //        given
-        OrderWithProductCartDTO orderDuplicateDTO = new OrderWithProductCartDTO();
         InventoryStatusDTO expectedInventoryStatusDTO = new InventoryStatusDTO();
         expectedInventoryStatusDTO.setIsOrderInStorage(true);
 
-        when(service.purchase(orderDuplicateDTO)).thenReturn(expectedInventoryStatusDTO);
+        when(service.purchase(orderWithProductCartDTO)).thenReturn(expectedInventoryStatusDTO);
 
 //        when
         mockMvc.perform(post("/api/v1/purchase/operation")
@@ -57,6 +74,22 @@ class PurchaseControllerTest {
                         .content(new ObjectMapper().writeValueAsString(orderWithProductCartDTO)))
                 .andExpect(status().isOk());
 
+//        then
+        verify(service, times(1)).purchase(orderWithProductCartDTO);
+    }
+
+    @Test
+    void testPurchaseOperationStillRunning() throws Exception {
+//        given
+        when(service.purchase(orderWithProductCartDTO)).thenReturn(null);
+
+//        when
+        mockMvc.perform(post("/api/v1/purchase/operation")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(orderWithProductCartDTO)))
+                .andExpect(status().isConflict())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+
 //        then
         verify(service, times(1)).purchase(orderWithProductCartDTO);
     }
@@ -64,7 +97,7 @@ class PurchaseControllerTest {
     @Test
     void testPurchaseMailSend() throws Exception {
 //        given
-        doNothing().when(service).purchaseMailSend(orderWithProductCartDTO);
+        when(service.purchaseMailSend(orderWithProductCartDTO)).thenReturn(null);
 
 //        when
         mockMvc.perform(post("/api/v1/purchase/mail/send")
@@ -75,4 +108,35 @@ class PurchaseControllerTest {
 //        then
         verify(service, times(1)).purchaseMailSend(orderWithProductCartDTO);
     }
+
+    @Test
+    void testFindStatus() throws Exception {
+//        given
+        when(asyncService.findStatus("token")).thenReturn(PurchaseStatusDTO.builder()
+                .token("token")
+                .orderId("id")
+                .status(PurchaseStatus.CONFIRMED)
+                .build());
+
+//        when
+        mockMvc.perform(get("/api/v1/purchase/status/token"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("CONFIRMED"));
+
+//        then
+        verify(asyncService, times(1)).findStatus("token");
+    }
+
+    @Test
+    void testFindStatusUnknownToken() throws Exception {
+//        given
+        when(asyncService.findStatus("token")).thenReturn(null);
+
+//        when
+        mockMvc.perform(get("/api/v1/purchase/status/token"))
+                .andExpect(status().isNotFound());
+
+//        then
+        verify(asyncService, times(1)).findStatus("token");
+    }
 }
@@ -0,0 +1,194 @@
+package com.shop.purchaseservice.service;
+
+import com.shop.purchaseservice.dto.CartItemDTO;
+import com.shop.purchaseservice.dto.InventoryStatusDTO;
+import com.shop.purchaseservice.dto.OrderWithProductCartDTO;
+import com.shop.purchaseservice.dto.PurchaseStatusDTO;
+import com.shop.purchaseservice.enums.PurchaseStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AsyncPurchaseServiceTest {
+
+    @Mock
+    private PurchaseService purchaseService;
+
+    @Mock
+    private PurchaseStatusStore purchaseStatusStore;
+
+    private AsyncPurchaseService service;
+
+    private OrderWithProductCartDTO order;
+
+    @BeforeEach
+    void setUp() {
+        service = new AsyncPurchaseService(purchaseService, purchaseStatusStore);
+        ReflectionTestUtils.setField(service, "partitions", 1);
+        ReflectionTestUtils.setField(service, "capacity", 1);
+        ReflectionTestUtils.setField(service, "shutdownTimeout", 1000L);
+        service.start();
+        order = OrderWithProductCartDTO.builder()
+                .customerId("customerId")
+                .cart(List.of(CartItemDTO.builder().productId(1L).quantity(1).unitPrice(BigDecimal.ONE).build()))
+                .cost(new BigDecimal(1))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    void isValid() {
+//        then
+        assertTrue(service.isValid(order));
+        order.setCart(List.of());
+        assertFalse(service.isValid(order));
+    }
+
+    @Test
+    void submitConfirmed() {
+//        given
+        when(purchaseService.purchase(eq(order), any(Runnable.class))).thenAnswer(invocation -> {
+            invocation.getArgument(1, Runnable.class).run();
+            return InventoryStatusDTO.builder().isOrderInStorage(true).build();
+        });
+
+//        when
+        PurchaseStatusDTO accepted = service.submit(order);
+
+//        then
+        assertEquals(PurchaseStatus.PENDING, accepted.getStatus());
+        assertTrue(order.getId().matches("[0-9a-f]{24}"));
+        assertEquals(order.getId(), accepted.getOrderId());
+        assertNotEquals(accepted.getToken(), order.getId());
+        ArgumentCaptor<PurchaseStatusDTO> statuses = ArgumentCaptor.forClass(PurchaseStatusDTO.class);
+        verify(purchaseStatusStore, timeout(1000).times(3)).save(statuses.capture());
+        assertEquals(List.of(PurchaseStatus.PENDING, PurchaseStatus.RESERVED, PurchaseStatus.CONFIRMED),
+                statuses.getAllValues().stream().map(PurchaseStatusDTO::getStatus).toList());
+    }
+
+    @Test
+    void submitRejected() {
+//        given
+        when(purchaseService.purchase(eq(order), any(Runnable.class))).thenReturn(InventoryStatusDTO.builder()
+                .isOrderInStorage(false)
+                .outOfStorageProducts(order.getCart())
+                .build());
+
+//        when
+        service.submit(order);
+
+//        then
+        ArgumentCaptor<PurchaseStatusDTO> statuses = ArgumentCaptor.forClass(PurchaseStatusDTO.class);
+        verify(purchaseStatusStore, timeout(1000).times(2)).save(statuses.capture());
+        assertEquals(PurchaseStatus.REJECTED, statuses.getValue().getStatus());
+        assertEquals(List.of(1L), statuses.getValue().getListOutOfStorageId());
+    }
+
+    @Test
+    void submitFailed() {
+//        given
+        when(purchaseService.purchase(eq(order), any(Runnable.class))).thenThrow(new IllegalStateException("down"));
+
+//        when
+        service.submit(order);
+
+//        then
+        ArgumentCaptor<PurchaseStatusDTO> statuses = ArgumentCaptor.forClass(PurchaseStatusDTO.class);
+        verify(purchaseStatusStore, timeout(1000).times(2)).save(statuses.capture());
+        assertEquals(PurchaseStatus.FAILED, statuses.getValue().getStatus());
+    }
+
+    @Test
+    void submitToFullQueue() throws Exception {
+//        given
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(purchaseService.purchase(any(OrderWithProductCartDTO.class), any(Runnable.class))).thenAnswer(invocation -> {
+            running.countDown();
+            release.await();
+            return InventoryStatusDTO.builder().isOrderInStorage(true).build();
+        });
+        service.submit(order);
+        running.await();
+        service.submit(OrderWithProductCartDTO.builder().customerId("customerId").build());
+
+//        when
+        PurchaseStatusDTO refused = service.submit(OrderWithProductCartDTO.builder().customerId("customerId").build());
+
+//        then
+        assertNull(refused);
+        release.countDown();
+    }
+
+    @Test
+    void stopFinishesQueuedPurchases() throws Exception {
+//        given
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(purchaseService.purchase(any(OrderWithProductCartDTO.class), any(Runnable.class))).thenAnswer(invocation -> {
+            running.countDown();
+            release.await();
+            return InventoryStatusDTO.builder().isOrderInStorage(true).build();
+        });
+        service.submit(order);
+        running.await();
+        service.submit(OrderWithProductCartDTO.builder().customerId("customerId").build());
+        release.countDown();
+
+//        when
+        service.stop();
+
+//        then
+        verify(purchaseService, times(2)).purchase(any(OrderWithProductCartDTO.class), any(Runnable.class));
+        ArgumentCaptor<PurchaseStatusDTO> statuses = ArgumentCaptor.forClass(PurchaseStatusDTO.class);
+        verify(purchaseStatusStore, times(4)).save(statuses.capture());
+        assertEquals(2, statuses.getAllValues().stream()
+                .filter(status -> status.getStatus() == PurchaseStatus.CONFIRMED)
+                .count());
+    }
+
+    @Test
+    void stopFailsPurchasesStillQueued() throws Exception {
+//        given
+        ReflectionTestUtils.setField(service, "shutdownTimeout", 100L);
+        CountDownLatch running = new CountDownLatch(1);
+        when(purchaseService.purchase(any(OrderWithProductCartDTO.class), any(Runnable.class))).thenAnswer(invocation -> {
+            running.countDown();
+            try {
+                new CountDownLatch(1).await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException("Interrupted", e);
+            }
+            return InventoryStatusDTO.builder().isOrderInStorage(true).build();
+        });
+        service.submit(order);
+        running.await();
+        PurchaseStatusDTO queued = service.submit(OrderWithProductCartDTO.builder().customerId("customerId").build());
+
+//        when
+        service.stop();
+
+//        then
+        verify(purchaseService, times(1)).purchase(any(OrderWithProductCartDTO.class), any(Runnable.class));
+        verify(purchaseStatusStore, times(1)).save(argThat(status -> queued.getToken().equals(status.getToken())
+                && status.getStatus() == PurchaseStatus.FAILED));
+    }
+}
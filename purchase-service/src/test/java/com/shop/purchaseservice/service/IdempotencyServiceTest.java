@@ -0,0 +1,172 @@
+package com.shop.purchaseservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.purchaseservice.dto.CartItemDTO;
+import com.shop.purchaseservice.dto.InventoryStatusDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IdempotencyServiceTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    private IdempotencyService service;
+
+    private InventoryStatusDTO inStorage;
+
+    @BeforeEach
+    void setUp() {
+        service = new IdempotencyService(redisTemplate, new ObjectMapper());
+        ReflectionTestUtils.setField(service, "timeToLive", 60000L);
+        ReflectionTestUtils.setField(service, "claimTimeout", 1000L);
+        ReflectionTestUtils.setField(service, "localSize", 10L);
+        service.init();
+        lenient().when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        inStorage = InventoryStatusDTO.builder()
+                .isOrderInStorage(true)
+                .outOfStorageProducts(List.of())
+                .build();
+    }
+
+    @Test
+    void repeatIsAnsweredFromMemory() {
+//        given
+        when(valueOperations.setIfAbsent(eq("purchase:idempotency:key"), eq("IN_PROGRESS"), any(Duration.class)))
+                .thenReturn(true);
+        AtomicInteger purchases = new AtomicInteger();
+
+//        when
+        InventoryStatusDTO first = service.execute("key", () -> {
+            purchases.incrementAndGet();
+            return inStorage;
+        });
+        InventoryStatusDTO repeat = service.execute("key", () -> {
+            purchases.incrementAndGet();
+            return inStorage;
+        });
+
+//        then
+        assertSame(first, repeat);
+        assertEquals(1, purchases.get());
+        verify(valueOperations, times(1)).set(eq("purchase:idempotency:key"), anyString(), eq(Duration.ofMillis(60000)));
+    }
+
+    @Test
+    void repeatIsAnsweredFromRedis() throws Exception {
+//        given
+        InventoryStatusDTO outOfStorage = InventoryStatusDTO.builder()
+                .isOrderInStorage(false)
+                .outOfStorageProducts(List.of(CartItemDTO.builder()
+                        .productId(1L)
+                        .quantity(2)
+                        .unitPrice(new BigDecimal("9.99"))
+                        .build()))
+                .build();
+        String stored = new ObjectMapper().writeValueAsString(outOfStorage);
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get("purchase:idempotency:key")).thenReturn(stored);
+
+//        when
+        InventoryStatusDTO result = service.execute("key", () -> fail("purchase must not run again"));
+
+//        then
+        assertEquals(outOfStorage, result);
+    }
+
+    @Test
+    void keyClaimedByAnotherInstance() {
+//        given
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(false);
+        when(valueOperations.get("purchase:idempotency:key")).thenReturn("IN_PROGRESS");
+
+//        when
+        InventoryStatusDTO result = service.execute("key", () -> fail("purchase must not run"));
+
+//        then
+        assertNull(result);
+    }
+
+    @Test
+    void failedPurchaseReleasesKey() {
+//        given
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+
+//        when
+        assertThrows(IllegalStateException.class, () -> service.execute("key", () -> {
+            throw new IllegalStateException("Storage service unavailable");
+        }));
+
+//        then
+        verify(redisTemplate, times(1)).delete("purchase:idempotency:key");
+        verify(valueOperations, never()).set(anyString(), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void purchaseStillRunningReleasesKey() {
+//        given
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+
+//        when
+        InventoryStatusDTO result = service.execute("key", () -> null);
+
+//        then
+        assertNull(result);
+        verify(redisTemplate, times(1)).delete("purchase:idempotency:key");
+        verify(valueOperations, never()).set(anyString(), anyString(), any(Duration.class));
+    }
+
+    @Test
+    void concurrentRepeatsShareOneExecution() throws Exception {
+//        given
+        when(valueOperations.setIfAbsent(anyString(), anyString(), any(Duration.class))).thenReturn(true);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger purchases = new AtomicInteger();
+        CompletableFuture<InventoryStatusDTO> first = CompletableFuture.supplyAsync(() -> service.execute("key", () -> {
+            purchases.incrementAndGet();
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return inStorage;
+        }));
+        running.await();
+
+//        when
+        CompletableFuture<InventoryStatusDTO> repeat = CompletableFuture.supplyAsync(() -> service.execute("key", () -> {
+            purchases.incrementAndGet();
+            return inStorage;
+        }));
+        Thread.sleep(100);
+        release.countDown();
+
+//        then
+        assertSame(first.get(), repeat.get());
+        assertEquals(1, purchases.get());
+        verify(valueOperations, times(1)).setIfAbsent(anyString(), anyString(), any(Duration.class));
+    }
+}
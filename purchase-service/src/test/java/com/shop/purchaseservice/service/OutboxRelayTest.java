@@ -0,0 +1,123 @@
+package com.shop.purchaseservice.service;
+
+import com.shop.purchaseservice.model.OutboxEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxService outboxService;
+
+    @Mock
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @InjectMocks
+    private OutboxRelay relay;
+
+    private OutboxEvent order;
+    private OutboxEvent sale;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(relay, "batchSize", 2);
+        ReflectionTestUtils.setField(relay, "sendTimeout", 100L);
+        order = OutboxEvent.builder()
+                .id(1L)
+                .topic("order-topic")
+                .messageKey("id")
+                .payload("{\"id\":\"id\"}")
+                .build();
+        sale = OutboxEvent.builder()
+                .id(2L)
+                .topic("sale-topic")
+                .messageKey("customerId")
+                .payload("{\"customerId\":\"customerId\"}")
+                .build();
+    }
+
+    @Test
+    void relayPublishesUntilOutboxIsEmpty() {
+//        given
+        when(outboxService.findBatch(2)).thenReturn(List.of(order, sale), List.of());
+        when(kafkaTemplate.send(anyString(), anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(null));
+
+//        when
+        relay.relay();
+
+//        then
+        verify(kafkaTemplate, times(1)).send("order-topic", "id", "{\"id\":\"id\"}");
+        verify(kafkaTemplate, times(1)).send("sale-topic", "customerId", "{\"customerId\":\"customerId\"}");
+        verify(outboxService, times(1)).deleteAll(List.of(1L, 2L));
+        verify(outboxService, times(2)).findBatch(2);
+        assertEquals(1, meterRegistry.get("purchase.kafka.send").tag("topic", "order-topic").timer().count());
+        assertEquals(11, meterRegistry.get("purchase.kafka.record.size").tag("topic", "order-topic").summary().totalAmount());
+    }
+
+    @Test
+    void relayKeepsUnacknowledgedEvents() {
+//        given
+        when(outboxService.findBatch(2)).thenReturn(List.of(order, sale));
+        when(kafkaTemplate.send(eq("order-topic"), anyString(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+        when(kafkaTemplate.send(eq("sale-topic"), anyString(), anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Kafka unavailable")));
+
+//        when
+        relay.relay();
+
+//        then
+        verify(outboxService, times(1)).deleteAll(List.of(1L));
+        verify(outboxService, times(1)).findBatch(2);
+        assertEquals(1, meterRegistry.get("purchase.kafka.send").tag("outcome", "failure").timer().count());
+    }
+
+    @Test
+    void relayKeepsEventsAfterUnacknowledgedOne() {
+//        given
+        when(outboxService.findBatch(2)).thenReturn(List.of(order, sale));
+        when(kafkaTemplate.send(eq("order-topic"), anyString(), anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Kafka unavailable")));
+        when(kafkaTemplate.send(eq("sale-topic"), anyString(), anyString()))
+                .thenReturn(CompletableFuture.completedFuture(null));
+
+//        when
+        relay.relay();
+
+//        then
+        verify(outboxService, never()).deleteAll(anyList());
+        verify(outboxService, times(1)).findBatch(2);
+    }
+
+    @Test
+    void relayEmptyOutbox() {
+//        given
+        when(outboxService.findBatch(2)).thenReturn(List.of());
+
+//        when
+        relay.relay();
+
+//        then
+        verifyNoInteractions(kafkaTemplate);
+    }
+}
@@ -0,0 +1,116 @@
+package com.shop.purchaseservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.purchaseservice.dto.CartItemDTO;
+import com.shop.purchaseservice.dto.OrderWithProductCartDTO;
+import com.shop.purchaseservice.dto.ProductDuplicateDTO;
+import com.shop.purchaseservice.enums.SagaState;
+import com.shop.purchaseservice.enums.SagaStep;
+import com.shop.purchaseservice.model.PurchaseSaga;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PurchaseSagaStoreTest {
+
+    private EmbeddedDatabase database;
+
+    private PurchaseSagaStore store;
+
+    private OrderWithProductCartDTO order;
+
+    @BeforeEach
+    void setUp() {
+        database = new EmbeddedDatabaseBuilder()
+                .setType(EmbeddedDatabaseType.H2)
+                .generateUniqueName(true)
+                .addScript("schema.sql")
+                .build();
+        store = new PurchaseSagaStore(new JdbcTemplate(database), new ObjectMapper());
+        order = OrderWithProductCartDTO.builder()
+                .id("id")
+                .customerId("customerId")
+                .cart(List.of(CartItemDTO.builder()
+                        .productId(1L)
+                        .quantity(2)
+                        .unitPrice(new BigDecimal("5.25"))
+                        .build()))
+                .cost(new BigDecimal("10.5"))
+                .products(Map.of(1L, ProductDuplicateDTO.builder().id(1L).name("Product1").build()))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.shutdown();
+    }
+
+    @Test
+    void sagaLifecycle() {
+//        when
+        store.start(order);
+        store.markDone("id", SagaStep.STOCK_RESERVED);
+        store.publish("id");
+        Integer steps = store.markDone("id", SagaStep.MAIL_SENT);
+        List<PurchaseSaga> sagas = store.findAllUpdatedBefore(LocalDateTime.now().plusMinutes(1));
+
+//        then
+        assertEquals(SagaStep.STOCK_RESERVED.bit() | SagaStep.MAIL_SENT.bit(), steps);
+        assertEquals(1, sagas.size());
+        assertEquals(SagaState.PUBLISHED, sagas.get(0).getState());
+        assertTrue(sagas.get(0).isDone(SagaStep.MAIL_SENT));
+        assertFalse(sagas.get(0).isDone(SagaStep.CART_CLEANED));
+        assertEquals(order, sagas.get(0).getOrder());
+    }
+
+    @Test
+    void freshSagaIsNotStale() {
+//        given
+        store.start(order);
+
+//        when
+        List<PurchaseSaga> sagas = store.findAllUpdatedBefore(LocalDateTime.now().minusMinutes(1));
+
+//        then
+        assertTrue(sagas.isEmpty());
+    }
+
+    @Test
+    void markDoneOnDeletedSaga() {
+//        given
+        store.start(order);
+        store.delete("id");
+
+//        when
+        Integer steps = store.markDone("id", SagaStep.MAIL_SENT);
+
+//        then
+        assertNull(steps);
+    }
+
+    @Test
+    void startRepeatedOrder() {
+//        given
+        assertTrue(store.start(order));
+        store.publish("id");
+
+//        when
+        boolean started = store.start(order);
+
+//        then
+        assertFalse(started);
+        assertEquals(SagaState.PUBLISHED, store.findState("id"));
+        assertNull(store.findState("unknown"));
+    }
+}
@@ -3,20 +3,31 @@ package com.shop.purchaseservice.service;
 import com.shop.purchaseservice.client.CustomerClient;
 import com.shop.purchaseservice.client.StorageClient;
 import com.shop.purchaseservice.dto.*;
+import com.shop.purchaseservice.enums.SagaState;
+import com.shop.purchaseservice.enums.SagaStep;
+import com.shop.purchaseservice.model.OutboxEvent;
+import com.shop.purchaseservice.model.PurchaseSaga;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
-import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -24,27 +35,45 @@ import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
 class PurchaseServiceTest {
 
+    private static final int ALL_STEPS = SagaStep.STOCK_RESERVED.bit() | SagaStep.CART_CLEANED.bit()
+            | SagaStep.MAIL_SENT.bit();
+
     @Mock
     private StorageClient storageClient;
     @Mock
-    private KafkaTemplate<String, OrderWithProductCartDTO> kafkaAddOrder;
+    private CustomerClient customerClient;
+    @Mock
+    private OutboxService outboxService;
     @Mock
-    private KafkaTemplate<String, MailDTO> kafkaMail;
+    private PurchaseSagaStore sagaStore;
     @Mock
-    private CustomerClient customerClient;
+    private TransactionTemplate transactionTemplate;
     @Mock
-    private KafkaTemplate<String, SaleDuplicateDTO> kafkaSale;
+    private AsyncTaskExecutor taskExecutor;
 
 
-    @Spy
-    @InjectMocks
     private PurchaseService purchaseService;
 
     private OrderWithProductCartDTO orderWithProductCartDTO;
-    private Map<ProductDuplicateDTO, Integer> cart;
+    private List<CartItemDTO> cart;
 
     @BeforeEach
     void setUp() {
+        purchaseService = spy(new PurchaseService(storageClient, customerClient, outboxService, sagaStore,
+                transactionTemplate, taskExecutor));
+        ReflectionTestUtils.setField(purchaseService, "stepTimeout", 100L);
+        ReflectionTestUtils.setField(purchaseService, "staleAfter", 60000L);
+        lenient().doAnswer(invocation -> {
+            invocation.getArgument(0, Runnable.class).run();
+            return null;
+        }).when(taskExecutor).execute(any(Runnable.class));
+        lenient().doAnswer(invocation -> {
+            invocation.getArgument(0, Consumer.class).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        lenient().when(sagaStore.start(any())).thenReturn(true);
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.getArgument(0, TransactionCallback.class).doInTransaction(null));
 
         ProductDuplicateDTO product = ProductDuplicateDTO.builder()
                 .id(1L)
@@ -56,22 +85,34 @@ class PurchaseServiceTest {
                 .feedBack(BigDecimal.valueOf(4.5))
                 .build();
 
-        cart = new HashMap<>();
-        cart.put(product, 1);
+        cart = List.of(CartItemDTO.builder()
+                .productId(1L)
+                .quantity(1)
+                .unitPrice(BigDecimal.valueOf(100))
+                .build());
 
         orderWithProductCartDTO = OrderWithProductCartDTO.builder()
                 .id("1L")
                 .customerId("1L")
                 .cart(cart)
                 .cost(new BigDecimal("1000.0"))
+                .products(Map.of(1L, product))
                 .build();
     }
 
     @Test
     void testPurchase_OrderInStorage() {
 //        given
-        when(storageClient.isOrderInStorage(any())).thenReturn(true);
+        InventoryStatusDTO inventoryStatusDTO = InventoryStatusDTO.builder()
+                .isOrderInStorage(true)
+                .outOfStorageProducts(List.of())
+                .build();
+        when(storageClient.reserve(any())).thenReturn(inventoryStatusDTO);
         doNothing().when(purchaseService).purchaseLogicIfOrderInStorage(orderWithProductCartDTO);
+        when(sagaStore.markDone("1L", SagaStep.STOCK_RESERVED)).thenReturn(SagaStep.STOCK_RESERVED.bit());
+        when(sagaStore.markDone("1L", SagaStep.CART_CLEANED))
+                .thenReturn(SagaStep.STOCK_RESERVED.bit() | SagaStep.CART_CLEANED.bit());
+        doReturn(ALL_STEPS).when(purchaseService).purchaseMailSend(orderWithProductCartDTO);
 
 //        when
         InventoryStatusDTO result = purchaseService.purchase(orderWithProductCartDTO);
@@ -79,80 +120,249 @@ class PurchaseServiceTest {
 //        then
         verify(purchaseService,times(1)).purchaseLogicIfOrderInStorage(orderWithProductCartDTO);
         assertTrue(result.getIsOrderInStorage());
-        verify(storageClient, times(1)).isOrderInStorage(any());
+        verify(storageClient, times(1)).reserve(argThat(order -> order.getProducts() == null
+                && order.getCart().equals(cart)));
+        verify(customerClient, times(1)).removeFromCart("1L", List.of(1L));
+        verify(sagaStore, times(1)).start(orderWithProductCartDTO);
+        verify(sagaStore, times(1)).markDone("1L", SagaStep.STOCK_RESERVED);
+        verify(sagaStore, times(1)).markDone("1L", SagaStep.CART_CLEANED);
+        verify(sagaStore, times(1)).delete("1L");
+        verify(storageClient, never()).release(any());
     }
 
     @Test
     void testPurchase_OrderNotInStorage() {
 //        given
-        when(storageClient.isOrderInStorage(any())).thenReturn(false);
-        Map<ProductDuplicateDTO, Integer> outOfStockProducts = Map.of(
-                ProductDuplicateDTO.builder()
-                        .id(2L)
-                        .description("Out of stock product")
-                        .cost(BigDecimal.valueOf(150))
-                        .name("Product2")
-                        .producer("AnotherProducer")
-                        .category("Home Appliances")
-                        .feedBack(BigDecimal.valueOf(4.2))
-                        .build(), 2
-        );
-        when(storageClient.findOutOfStorageProduct(cart, orderWithProductCartDTO.getCustomerId())).thenReturn(outOfStockProducts);
+        List<CartItemDTO> outOfStockProducts = List.of(CartItemDTO.builder()
+                .productId(2L)
+                .quantity(2)
+                .unitPrice(BigDecimal.valueOf(150))
+                .build());
+        InventoryStatusDTO inventoryStatusDTO = InventoryStatusDTO.builder()
+                .isOrderInStorage(false)
+                .outOfStorageProducts(outOfStockProducts)
+                .build();
+        when(storageClient.reserve(any())).thenReturn(inventoryStatusDTO);
 
 //        when
         InventoryStatusDTO result = purchaseService.purchase(orderWithProductCartDTO);
 
 //        then
         assertFalse(result.getIsOrderInStorage());
-        verify(storageClient, times(1)).findOutOfStorageProduct(cart, orderWithProductCartDTO.getCustomerId());
+        assertEquals(outOfStockProducts, result.getOutOfStorageProducts());
+        verify(storageClient, times(1)).reserve(any());
+        verify(purchaseService, never()).purchaseLogicIfOrderInStorage(any());
+        verify(storageClient, never()).release(any());
+        verify(customerClient, never()).removeFromCart(any(), any());
+        verify(sagaStore, times(1)).delete("1L");
     }
 
     @Test
-    void testPurchaseLogicIfOrderInStorage() {
+    void testPurchase_GeneratesObjectIdForOrderWithoutId() {
+//        given
+        orderWithProductCartDTO.setId(null);
+        when(storageClient.reserve(any())).thenReturn(InventoryStatusDTO.builder()
+                .isOrderInStorage(false)
+                .outOfStorageProducts(cart)
+                .build());
+
+//        when
+        purchaseService.purchase(orderWithProductCartDTO);
+
+//        then
+        assertTrue(orderWithProductCartDTO.getId().matches("[0-9a-f]{24}"));
+        verify(sagaStore, times(1)).start(orderWithProductCartDTO);
+    }
+
+    @Test
+    void testPurchase_RepeatedOrderAlreadyPublished() {
+//        given
+        when(sagaStore.start(orderWithProductCartDTO)).thenReturn(false);
+        when(sagaStore.findState("1L")).thenReturn(SagaState.PUBLISHED);
+
+//        when
+        InventoryStatusDTO result = purchaseService.purchase(orderWithProductCartDTO);
+
+//        then
+        assertTrue(result.getIsOrderInStorage());
+        assertTrue(result.getOutOfStorageProducts().isEmpty());
+        verify(storageClient, never()).reserve(any());
+        verify(storageClient, never()).release(any());
+        verify(sagaStore, never()).delete(any());
+    }
+
+    @Test
+    void testPurchase_RepeatedOrderStillRunning() {
+//        given
+        when(sagaStore.start(orderWithProductCartDTO)).thenReturn(false);
+        when(sagaStore.findState("1L")).thenReturn(SagaState.STARTED);
+
+//        when
+        InventoryStatusDTO result = purchaseService.purchase(orderWithProductCartDTO);
+
+//        then
+        assertNull(result);
+        verify(storageClient, never()).reserve(any());
+        verify(purchaseService, never()).purchaseLogicIfOrderInStorage(any());
+    }
+
+    @Test
+    void testPurchase_ReleaseReservationOnFailure() {
+//        given
+        InventoryStatusDTO inventoryStatusDTO = InventoryStatusDTO.builder()
+                .isOrderInStorage(true)
+                .outOfStorageProducts(List.of())
+                .build();
+        when(storageClient.reserve(any())).thenReturn(inventoryStatusDTO);
+        doThrow(new IllegalStateException("Outbox unavailable")).when(purchaseService).purchaseLogicIfOrderInStorage(orderWithProductCartDTO);
+
+//        when
+        assertThrows(IllegalStateException.class, () -> purchaseService.purchase(orderWithProductCartDTO));
+
+//        then
+        verify(storageClient, times(1)).release(orderWithProductCartDTO.getId());
+        verify(customerClient, never()).removeFromCart(any(), any());
+        verify(sagaStore, times(1)).delete("1L");
+    }
+
+    @Test
+    void testPurchase_ReservationFails() {
+//        given
+        IllegalStateException failure = new IllegalStateException("Storage service unavailable");
+        when(storageClient.reserve(any())).thenThrow(failure);
+
+//        when
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> purchaseService.purchase(orderWithProductCartDTO));
+
+//        then
+        assertSame(failure, thrown);
+        verify(storageClient, times(1)).release("1L");
+        verify(customerClient, never()).removeFromCart(any(), any());
+        verify(purchaseService, never()).purchaseLogicIfOrderInStorage(any());
+    }
+
+    @Test
+    void testPurchase_FailedCompensationIsLeftForRecovery() {
+//        given
+        when(storageClient.reserve(any())).thenThrow(new IllegalStateException("Storage service unavailable"));
+        doThrow(new IllegalStateException("Storage service unavailable")).when(storageClient).release(any());
+
+//        when
+        assertThrows(IllegalStateException.class, () -> purchaseService.purchase(orderWithProductCartDTO));
+
+//        then
+        verify(sagaStore, never()).delete(any());
+    }
+
+    @Test
+    void testPurchase_StepFailureIsNotPropagated() {
 //        given
-        doNothing().when(customerClient).cleanCart(anyString());
+        when(storageClient.reserve(any())).thenReturn(InventoryStatusDTO.builder()
+                .isOrderInStorage(true)
+                .build());
+        doNothing().when(purchaseService).purchaseLogicIfOrderInStorage(orderWithProductCartDTO);
+        doThrow(new IllegalStateException("Customer service unavailable")).when(purchaseService).purchaseMailSend(any());
+
+//        when
+        InventoryStatusDTO result = purchaseService.purchase(orderWithProductCartDTO);
+
+//        then
+        assertTrue(result.getIsOrderInStorage());
+        verify(sagaStore, never()).markDone("1L", SagaStep.MAIL_SENT);
+        verify(sagaStore, never()).delete(any());
+    }
+
+    @Test
+    void testPurchaseLogicIfOrderInStorage() {
+//        when
+        purchaseService.purchaseLogicIfOrderInStorage(orderWithProductCartDTO);
 
-        doNothing().when(purchaseService).purchaseMailSend(any());
+//        then
+        ArgumentCaptor<List<OutboxEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(outboxService, times(1)).append(events.capture());
+        assertEquals(List.of("order-topic", "sale-topic"), events.getValue().stream().map(OutboxEvent::getTopic).toList());
+        assertNull(((OrderWithProductCartDTO) events.getValue().get(0).getPayload()).getProducts());
+        verify(sagaStore, times(1)).publish("1L");
+    }
+
+    @Test
+    void testPurchaseLogicIfOrderInStorage_NoSaleUnderThreshold() {
+//        given
+        orderWithProductCartDTO.setCost(new BigDecimal("100.0"));
 
 //        when
         purchaseService.purchaseLogicIfOrderInStorage(orderWithProductCartDTO);
 
 //        then
-        verify(kafkaAddOrder, times(1)).send(anyString(), any());
-        verify(customerClient, times(1)).cleanCart(anyString());
-        verify(kafkaSale, times(1)).send(anyString(), any());
+        ArgumentCaptor<List<OutboxEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(outboxService, times(1)).append(events.capture());
+        assertEquals(List.of("order-topic"), events.getValue().stream().map(OutboxEvent::getTopic).toList());
     }
 
     @Test
-    void testPurchaseLogicIfOrderNotInStorage() {
+    void testPurchaseLogicIfOrderInStorage_OutboxWriteFails() {
 //        given
-        Map<ProductDuplicateDTO, Integer> outOfStockProducts = Map.of(
-                ProductDuplicateDTO.builder()
-                        .id(2L)
-                        .description("Out of stock product")
-                        .cost(BigDecimal.valueOf(150))
-                        .name("Product2")
-                        .producer("AnotherProducer")
-                        .category("Home Appliances")
-                        .feedBack(BigDecimal.valueOf(4.2))
-                        .build(), 2
-        );
-        when(storageClient.findOutOfStorageProduct(cart, orderWithProductCartDTO.getCustomerId())).thenReturn(outOfStockProducts);
-
-//        when
-        Map<ProductDuplicateDTO, Integer> result = purchaseService.purchaseLogicIfOrderNotInStorage(orderWithProductCartDTO);
-
-//        then
-        verify(storageClient, times(1)).findOutOfStorageProduct(cart, orderWithProductCartDTO.getCustomerId());
-        assertTrue(result.containsKey(ProductDuplicateDTO.builder()
-                .id(2L)
-                .description("Out of stock product")
-                .cost(BigDecimal.valueOf(150))
-                .name("Product2")
-                .producer("AnotherProducer")
-                .category("Home Appliances")
-                .feedBack(BigDecimal.valueOf(4.2))
+        doThrow(new IllegalStateException("Outbox unavailable")).when(outboxService).append(anyList());
+
+//        when
+        assertThrows(IllegalStateException.class,
+                () -> purchaseService.purchaseLogicIfOrderInStorage(orderWithProductCartDTO));
+
+//        then
+        verify(sagaStore, never()).publish(any());
+    }
+
+    @Test
+    void testRecover() {
+//        given
+        OrderWithProductCartDTO publishedOrder = OrderWithProductCartDTO.builder()
+                .id("2L")
+                .customerId("2L")
+                .cart(cart)
+                .cost(new BigDecimal("100.0"))
+                .build();
+        when(sagaStore.findAllUpdatedBefore(any())).thenReturn(List.of(
+                PurchaseSaga.builder()
+                        .state(SagaState.STARTED)
+                        .order(orderWithProductCartDTO)
+                        .build(),
+                PurchaseSaga.builder()
+                        .state(SagaState.PUBLISHED)
+                        .steps(SagaStep.STOCK_RESERVED.bit() | SagaStep.CART_CLEANED.bit())
+                        .order(publishedOrder)
+                        .build()));
+        doReturn(ALL_STEPS).when(purchaseService).purchaseMailSend(publishedOrder);
+
+//        when
+        purchaseService.recover();
+
+//        then
+        verify(storageClient, times(1)).release("1L");
+        verify(sagaStore, times(1)).delete("1L");
+        verify(customerClient, never()).removeFromCart(any(), any());
+        verify(purchaseService, times(1)).purchaseMailSend(publishedOrder);
+        verify(sagaStore, times(1)).delete("2L");
+        verify(storageClient, never()).release("2L");
+    }
+
+    @Test
+    void testRecover_RemovesOnlyTheOrderedProductsFromCart() {
+//        given
+        when(sagaStore.findAllUpdatedBefore(any())).thenReturn(List.of(PurchaseSaga.builder()
+                .state(SagaState.PUBLISHED)
+                .steps(SagaStep.STOCK_RESERVED.bit() | SagaStep.MAIL_SENT.bit())
+                .order(orderWithProductCartDTO)
                 .build()));
+        when(sagaStore.markDone("1L", SagaStep.CART_CLEANED)).thenReturn(ALL_STEPS);
+
+//        when
+        purchaseService.recover();
+
+//        then
+        verify(customerClient, times(1)).removeFromCart("1L", List.of(1L));
+        verify(purchaseService, never()).purchaseMailSend(any());
+        verify(sagaStore, times(1)).delete("1L");
     }
 
     @Test
@@ -168,6 +378,31 @@ class PurchaseServiceTest {
         purchaseService.purchaseMailSend(orderWithProductCartDTO);
 
 //        then
-        verify(kafkaMail, times(1)).send(eq("mail-topic"), any(MailDTO.class));
+        ArgumentCaptor<List<OutboxEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(outboxService, times(1)).append(events.capture());
+        assertEquals("mail-topic", events.getValue().get(0).getTopic());
+        MailDTO mailDTO = (MailDTO) events.getValue().get(0).getPayload();
+        assertEquals("test@example.com", mailDTO.getTo());
+        assertEquals(List.of("Product1"), mailDTO.getData().get("Products"));
+        verify(transactionTemplate, times(1)).execute(any());
+        verify(sagaStore, times(1)).markDone("1L", SagaStep.MAIL_SENT);
+    }
+
+    @Test
+    void testPurchaseMailSend_WithoutProducts() {
+//        given
+        orderWithProductCartDTO.setProducts(null);
+        when(customerClient.findCustomerEmailAndNameById(anyString())).thenReturn(CustomerDTO.builder()
+                .email("test@example.com")
+                .name("Test Customer")
+                .build());
+
+//        when
+        purchaseService.purchaseMailSend(orderWithProductCartDTO);
+
+//        then
+        ArgumentCaptor<List<OutboxEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(outboxService, times(1)).append(events.capture());
+        assertEquals(List.of("1"), ((MailDTO) events.getValue().get(0).getPayload()).getData().get("Products"));
     }
 }
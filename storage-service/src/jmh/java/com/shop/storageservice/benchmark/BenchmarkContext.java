@@ -0,0 +1,185 @@
+package com.shop.storageservice.benchmark;
+
+import com.shop.storageservice.repository.StorageRepository;
+import com.shop.storageservice.repository.WarehouseRepository;
+import com.shop.storageservice.service.*;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.springframework.boot.Banner;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * The storage services as Spring beans over an embedded H2 database in PostgreSQL mode, so the benchmarks go
+ * through the same transactional proxies and JPA repositories as the service. Kafka, Redis and the product
+ * service are left out, and with them the low stock updates and the warehouse stock broadcast that follow a
+ * decrement; back-in-stock subscriptions are dropped. The README lists what the results therefore leave out.
+ */
+@Configuration
+@EnableTransactionManagement
+@EnableJpaRepositories(basePackageClasses = StorageRepository.class)
+class BenchmarkContext {
+
+    static ConfigurableApplicationContext start(CacheManager cacheManager) {
+        return new SpringApplicationBuilder(BenchmarkContext.class)
+                .web(WebApplicationType.NONE)
+                .bannerMode(Banner.Mode.OFF)
+                .logStartupInfo(false)
+                // the services log every call at info level, which would be measured instead of the service
+                .properties("logging.level.root=ERROR")
+                .initializers(applicationContext -> applicationContext.getBeanFactory()
+                        .registerSingleton("cacheManager", cacheManager))
+                .run();
+    }
+
+    @Bean(destroyMethod = "close")
+    public HikariDataSource dataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl("jdbc:h2:mem:storage-" + System.nanoTime() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        dataSource.setMaximumPoolSize(8);
+        return dataSource;
+    }
+
+    @Bean
+    public LocalContainerEntityManagerFactoryBean entityManagerFactory(DataSource dataSource) {
+        LocalContainerEntityManagerFactoryBean entityManagerFactory = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactory.setDataSource(dataSource);
+        entityManagerFactory.setPackagesToScan("com.shop.storageservice.model");
+        entityManagerFactory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        entityManagerFactory.setJpaPropertyMap(Map.of(
+                "hibernate.hbm2ddl.auto", "create",
+                "hibernate.physical_naming_strategy", CamelCaseToUnderscoresNamingStrategy.class.getName(),
+                "hibernate.implicit_naming_strategy", SpringImplicitNamingStrategy.class.getName()));
+        return entityManagerFactory;
+    }
+
+    @Bean
+    public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+        return new JpaTransactionManager(entityManagerFactory);
+    }
+
+    // H2 has no RETURNING clause, but its delta tables return the same rows, so those statements are rewritten
+    @Bean
+    public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+        return new JdbcTemplate(dataSource) {
+            @Override
+            public <T> T query(String sql, PreparedStatementSetter pss, ResultSetExtractor<T> rse) {
+                return super.query(withoutReturning(sql), pss, rse);
+            }
+        };
+    }
+
+    private static String withoutReturning(String sql) {
+        int returning = sql.lastIndexOf(" RETURNING ");
+        if (returning < 0) {
+            return sql;
+        }
+        return "SELECT " + sql.substring(returning + " RETURNING ".length()) +
+                " FROM " + (sql.startsWith("DELETE") ? "OLD" : "FINAL") + " TABLE (" + sql.substring(0, returning) + ")";
+    }
+
+    @Bean
+    public TransactionTemplate transactionTemplate(PlatformTransactionManager transactionManager) {
+        return new TransactionTemplate(transactionManager);
+    }
+
+    @Bean
+    public StockCache stockCache(CacheManager cacheManager) {
+        return new StockCache(cacheManager);
+    }
+
+    @Bean
+    public StripedStockService stripedStockService(StorageRepository repository, JdbcTemplate jdbcTemplate) {
+        return new StripedStockService(repository, jdbcTemplate);
+    }
+
+    @Bean
+    public WarehouseStockService warehouseStockService(WarehouseRepository warehouseRepository, JdbcTemplate jdbcTemplate) {
+        return new WarehouseStockService(warehouseRepository, jdbcTemplate, null);
+    }
+
+    @Bean
+    public InventoryLedgerService inventoryLedgerService(JdbcTemplate jdbcTemplate) {
+        return new InventoryLedgerService(null, null, jdbcTemplate);
+    }
+
+    // H2 has no INSERT ... RETURNING, so the IDs are inserted in one batch instead, whose counts H2 gives per row
+    @Bean
+    public ProcessedOrderService processedOrderService(JdbcTemplate jdbcTemplate) {
+        return new ProcessedOrderService(null, jdbcTemplate) {
+            @Override
+            public Set<String> markProcessed(List<String> listOrderId) {
+                List<String> listDistinctId = new ArrayList<>(new LinkedHashSet<>(listOrderId));
+                Timestamp processedAt = Timestamp.valueOf(LocalDateTime.now());
+                int[] counts = jdbcTemplate.execute((ConnectionCallback<int[]>) connection -> {
+                    try (PreparedStatement statement = connection.prepareStatement("INSERT INTO processed_order " +
+                            "(order_id, processed_at) VALUES (?, ?) ON CONFLICT DO NOTHING")) {
+                        for (String orderId : listDistinctId) {
+                            statement.setString(1, orderId);
+                            statement.setTimestamp(2, processedAt);
+                            statement.addBatch();
+                        }
+                        return statement.executeBatch();
+                    }
+                });
+                Set<String> newOrderId = new HashSet<>();
+                for (int i = 0; i < counts.length; i++) {
+                    if (counts[i] > 0) {
+                        newOrderId.add(listDistinctId.get(i));
+                    }
+                }
+                return newOrderId;
+            }
+        };
+    }
+
+    @Bean
+    public StockSubscriptionService stockSubscriptionService() {
+        return new StockSubscriptionService(null, null, null) {
+            @Override
+            public void subscribe(String customerId, Collection<Long> listProductId) {
+            }
+        };
+    }
+
+    @Bean
+    public StorageService storageService(StorageRepository repository,
+                                         JdbcTemplate jdbcTemplate,
+                                         TransactionTemplate transactionTemplate,
+                                         ProcessedOrderService processedOrderService,
+                                         StockCache stockCache,
+                                         StockSubscriptionService stockSubscriptionService,
+                                         StripedStockService stripedStockService,
+                                         WarehouseStockService warehouseStockService,
+                                         InventoryLedgerService inventoryLedgerService,
+                                         ApplicationEventPublisher eventPublisher) {
+        return new StorageService(null, repository, jdbcTemplate, transactionTemplate,
+                new SimpleMeterRegistry(), processedOrderService, stockCache, stockSubscriptionService, null,
+                stripedStockService, warehouseStockService, inventoryLedgerService, eventPublisher, null);
+    }
+}
@@ -0,0 +1,48 @@
+package com.shop.storageservice.benchmark;
+
+import com.shop.storageservice.dto.CartItemDTO;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Carts drawn from {@code skuCount} products. With {@code high} contention nine of ten lines are drawn from
+ * the first {@link #HOT_SKUS} products, as in a sale of a few items; with {@code none} every product is equally
+ * likely.
+ */
+final class Carts {
+
+    static final int HOT_SKUS = 8;
+
+    private Carts() {
+    }
+
+    static List<List<CartItemDTO>> generate(int count, int cartSize, int skuCount, String contention, long seed) {
+        Random random = new Random(seed);
+        boolean hot = "high".equals(contention);
+        List<List<CartItemDTO>> carts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // a product is in a cart at most once
+            Set<Long> listProductId = new HashSet<>();
+            List<CartItemDTO> cart = new ArrayList<>();
+            while (cart.size() < Math.min(cartSize, skuCount)) {
+                long productId = hot && random.nextInt(10) < 9
+                        ? random.nextInt(Math.min(HOT_SKUS, skuCount))
+                        : random.nextInt(skuCount);
+                if (listProductId.add(productId)) {
+                    cart.add(item(productId, 1 + random.nextInt(3)));
+                }
+            }
+            carts.add(cart);
+        }
+        return carts;
+    }
+
+    static CartItemDTO item(long productId, int quantity) {
+        return CartItemDTO.builder()
+                .productId(productId)
+                .quantity(quantity)
+                .unitPrice(BigDecimal.TEN)
+                .build();
+    }
+}
@@ -0,0 +1,84 @@
+package com.shop.storageservice.benchmark;
+
+import com.shop.storageservice.dto.CartItemDTO;
+import com.shop.storageservice.dto.InventoryStatusDTO;
+import com.shop.storageservice.service.StorageService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link StorageService#checkOrder}, which decides whether a cart is in storage and finds its out of stock
+ * products, through its transactional proxy against an embedded H2 database in PostgreSQL mode. With a warm
+ * cache every quantity is read from the cache; with a cold one every cart goes to the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckOrderBenchmark {
+
+    private static final int CARTS = 1024;
+
+    @Param({"1", "10", "50"})
+    private int cartSize;
+
+    @Param({"1000", "100000"})
+    private int skuCount;
+
+    @Param({"none", "high"})
+    private String contention;
+
+    @Param({"warm", "cold"})
+    private String cache;
+
+    private ConfigurableApplicationContext context;
+
+    private StorageService storageService;
+
+    private List<List<CartItemDTO>> carts;
+
+    @Setup
+    public void setUp() {
+        CacheManager cacheManager = "warm".equals(cache) ? new ConcurrentMapCacheManager() : new NoOpCacheManager();
+        context = BenchmarkContext.start(cacheManager);
+        Random random = new Random(42);
+        List<Object[]> batchArgs = new ArrayList<>();
+        for (long productId = 0; productId < skuCount; productId++) {
+            // one product in twenty is out of stock
+            batchArgs.add(new Object[]{productId, random.nextInt(20) == 0 ? 0 : 1_000});
+        }
+        context.getBean(JdbcTemplate.class)
+                .batchUpdate("INSERT INTO storage (product_id, quantity, version) VALUES (?, ?, 0)", batchArgs);
+
+        storageService = context.getBean(StorageService.class);
+        carts = Carts.generate(CARTS, cartSize, skuCount, contention, 7);
+        for (List<CartItemDTO> cart : carts) {
+            storageService.checkOrder(cart, "customer");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Benchmark
+    public InventoryStatusDTO checkOrder(Cursor cursor) {
+        List<CartItemDTO> cart = carts.get(cursor.next++ & (CARTS - 1));
+        return storageService.checkOrder(cart, "customer");
+    }
+}
@@ -0,0 +1,82 @@
+package com.shop.storageservice.benchmark;
+
+import com.shop.storageservice.dto.CartItemDTO;
+import com.shop.storageservice.dto.OrderWithProductCartDTO;
+import com.shop.storageservice.service.StorageService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link StorageService#reduceQuantityById} through its transactional proxy against an embedded H2 database in
+ * PostgreSQL mode. Every order has a new ID, so it is marked processed and its reservations are deleted before
+ * the storage decrement and ledger insert batches. Four threads place orders at once, so with {@code high}
+ * contention most of them wait for the rows of the same few products.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ReduceQuantityBenchmark {
+
+    private static final int ORDERS = 1024;
+
+    @Param({"1", "10", "50"})
+    private int cartSize;
+
+    @Param({"1000", "100000"})
+    private int skuCount;
+
+    @Param({"none", "high"})
+    private String contention;
+
+    private ConfigurableApplicationContext context;
+
+    private StorageService storageService;
+
+    private List<List<CartItemDTO>> carts;
+
+    private final AtomicLong nextOrderId = new AtomicLong();
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.start(new ConcurrentMapCacheManager());
+        List<Object[]> batchArgs = new ArrayList<>();
+        for (long productId = 0; productId < skuCount; productId++) {
+            batchArgs.add(new Object[]{productId, Integer.MAX_VALUE});
+        }
+        context.getBean(JdbcTemplate.class)
+                .batchUpdate("INSERT INTO storage (product_id, quantity, version) VALUES (?, ?, 0)", batchArgs);
+
+        storageService = context.getBean(StorageService.class);
+        carts = Carts.generate(ORDERS, cartSize, skuCount, contention, 7);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+    }
+
+    @Benchmark
+    public void reduceQuantityById(Cursor cursor) {
+        storageService.reduceQuantityById(OrderWithProductCartDTO.builder()
+                .id("order-" + nextOrderId.incrementAndGet())
+                .customerId("customer")
+                .cart(carts.get(cursor.next++ & (ORDERS - 1)))
+                .build());
+    }
+}
@@ -0,0 +1,8 @@
+package com.shop.storageservice.cache;
+
+public interface CacheInvalidationPublisher {
+
+    void publishEvict(String cacheName, String key);
+
+    void publishClear(String cacheName);
+}
@@ -0,0 +1,96 @@
+package com.shop.storageservice.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps every cache of the remote (Redis) cache manager into a {@link TwoLevelCache}.
+ * Invalidations are broadcast on a Redis pub/sub channel as {@code instanceId|cacheName[|key]};
+ * a message without a key clears the whole local cache. Messages sent by this instance are ignored.
+ */
+@Slf4j
+public class TwoLevelCacheManager extends AbstractTransactionSupportingCacheManager
+        implements CacheInvalidationPublisher {
+
+    private static final String SEPARATOR = "|";
+
+    private final CacheManager remoteCacheManager;
+    private final String localCacheSpec;
+    private final StringRedisTemplate redisTemplate;
+    private final String invalidationChannel;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, TwoLevelCache> twoLevelCaches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(CacheManager remoteCacheManager,
+                                String localCacheSpec,
+                                StringRedisTemplate redisTemplate,
+                                String invalidationChannel) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.localCacheSpec = localCacheSpec;
+        this.redisTemplate = redisTemplate;
+        this.invalidationChannel = invalidationChannel;
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        return remoteCacheManager.getCacheNames().stream()
+                .map(this::createTwoLevelCache)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        return createTwoLevelCache(name);
+    }
+
+    @Override
+    public void publishEvict(String cacheName, String key) {
+        redisTemplate.convertAndSend(invalidationChannel, instanceId + SEPARATOR + cacheName + SEPARATOR + key);
+    }
+
+    @Override
+    public void publishClear(String cacheName) {
+        redisTemplate.convertAndSend(invalidationChannel, instanceId + SEPARATOR + cacheName);
+    }
+
+    public void onInvalidation(String message) {
+        String[] parts = message.split("\\" + SEPARATOR, 3);
+        if (parts.length < 2 || instanceId.equals(parts[0])) {
+            return;
+        }
+
+        TwoLevelCache cache = twoLevelCaches.get(parts[1]);
+        if (cache == null) {
+            return;
+        }
+        if (parts.length == 2) {
+            cache.clearLocal();
+            log.info("Local cache {} cleared by another instance", parts[1]);
+        } else {
+            cache.evictLocal(parts[2]);
+        }
+    }
+
+    private TwoLevelCache createTwoLevelCache(String name) {
+        Cache remoteCache = remoteCacheManager.getCache(name);
+        if (remoteCache == null) {
+            return null;
+        }
+        return twoLevelCaches.computeIfAbsent(name, cacheName -> new TwoLevelCache(
+                cacheName,
+                Caffeine.from(localCacheSpec).recordStats().build(),
+                remoteCache,
+                this));
+    }
+}
@@ -0,0 +1,76 @@
+package com.shop.storageservice.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+
+/**
+ * Publishes the standard {@code cache.*} meters for a {@link TwoLevelCache} (hits count both tiers)
+ * plus {@code cache.tier.hits} split by {@code tier=local|remote} and the {@code cache.hit.ratio} of both tiers.
+ */
+public class TwoLevelCacheMeterBinder extends CacheMeterBinder<TwoLevelCache> {
+
+    public TwoLevelCacheMeterBinder(TwoLevelCache cache, Iterable<Tag> tags) {
+        super(cache, cache.getName(), tags);
+    }
+
+    @Override
+    protected Long size() {
+        TwoLevelCache cache = getCache();
+        return cache != null ? cache.getLocalSize() : null;
+    }
+
+    @Override
+    protected long hitCount() {
+        TwoLevelCache cache = getCache();
+        return cache != null ? cache.getLocalHitCount() + cache.getRemoteHitCount() : 0L;
+    }
+
+    @Override
+    protected Long missCount() {
+        TwoLevelCache cache = getCache();
+        return cache != null ? cache.getMissCount() : null;
+    }
+
+    @Override
+    protected Long evictionCount() {
+        TwoLevelCache cache = getCache();
+        return cache != null ? cache.getLocalEvictionCount() : null;
+    }
+
+    @Override
+    protected long putCount() {
+        TwoLevelCache cache = getCache();
+        return cache != null ? cache.getPutCount() : 0L;
+    }
+
+    @Override
+    protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        TwoLevelCache cache = getCache();
+        if (cache == null) {
+            return;
+        }
+        FunctionCounter.builder("cache.tier.hits", cache, TwoLevelCache::getLocalHitCount)
+                .tags(getTagsWithCacheName())
+                .tag("tier", "local")
+                .description("Hits served by the in-process cache")
+                .register(registry);
+        FunctionCounter.builder("cache.tier.hits", cache, TwoLevelCache::getRemoteHitCount)
+                .tags(getTagsWithCacheName())
+                .tag("tier", "remote")
+                .description("Hits served by Redis after a local miss")
+                .register(registry);
+        Gauge.builder("cache.hit.ratio", cache, TwoLevelCacheMeterBinder::hitRatio)
+                .tags(getTagsWithCacheName())
+                .description("Share of lookups served by either tier since startup")
+                .register(registry);
+    }
+
+    private static double hitRatio(TwoLevelCache cache) {
+        long hits = cache.getLocalHitCount() + cache.getRemoteHitCount();
+        long lookups = hits + cache.getMissCount();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
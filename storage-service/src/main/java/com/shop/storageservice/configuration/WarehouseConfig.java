@@ -0,0 +1,26 @@
+package com.shop.storageservice.configuration;
+
+import com.shop.storageservice.service.WarehouseStockService;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+@Configuration
+public class WarehouseConfig {
+
+    @Bean
+    public RedisMessageListenerContainer warehouseStockListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                        WarehouseStockService warehouseStockService) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> warehouseStockService.onChange(
+                        new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(WarehouseStockService.CHANGE_CHANNEL));
+        return container;
+    }
+}
@@ -0,0 +1,32 @@
+package com.shop.storageservice.controller;
+
+import com.shop.storageservice.model.InventoryMovement;
+import com.shop.storageservice.service.InventoryLedgerService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("api/v1/storage/ledger")
+@RequiredArgsConstructor
+public class InventoryLedgerController {
+    private final InventoryLedgerService service;
+
+    @GetMapping("quantity/{productId}")
+    public Integer findQuantityAt(
+            @PathVariable Long productId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return service.findQuantityAt(productId, at != null ? at : LocalDateTime.now());
+    }
+
+    @GetMapping("movements/{productId}")
+    public List<InventoryMovement> findMovements(
+            @PathVariable Long productId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return service.findMovements(productId, from, to);
+    }
+}
@@ -0,0 +1,29 @@
+package com.shop.storageservice.controller;
+
+import com.shop.storageservice.dto.InventoryStatusDTO;
+import com.shop.storageservice.dto.OrderWithProductCartDTO;
+import com.shop.storageservice.service.ReservationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("api/v1/storage/reservation")
+@RequiredArgsConstructor
+public class ReservationController {
+    private final ReservationService service;
+
+    @PostMapping(value = "reserve", consumes = {"application/json", "application/json;charset=UTF-8"}, produces = "application/json")
+    public InventoryStatusDTO reserve(@RequestBody OrderWithProductCartDTO orderWithProductCartDTO) {
+        return service.reserve(orderWithProductCartDTO);
+    }
+
+    @PutMapping("commit/{orderId}")
+    public void commit(@PathVariable(name = "orderId") String orderId) {
+        service.commit(orderId);
+    }
+
+    @PutMapping("release/{orderId}")
+    public void release(@PathVariable(name = "orderId") String orderId) {
+        service.release(orderId);
+    }
+}
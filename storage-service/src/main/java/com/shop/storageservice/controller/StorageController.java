@@ -1,22 +1,44 @@
 package com.shop.storageservice.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.storageservice.dto.BulkRestockResultDTO;
 import com.shop.storageservice.dto.CartDTO;
+import com.shop.storageservice.dto.InventoryStatusDTO;
 import com.shop.storageservice.dto.OrderWithProductCartDTO;
 import com.shop.storageservice.dto.ProductDuplicateDTO;
 import com.shop.storageservice.dto.ProductWithQuantityDTO;
+import com.shop.storageservice.dto.ProductWithQuantityPageDTO;
+import com.shop.storageservice.enums.StockFileFormat;
 import com.shop.storageservice.model.Storage;
+import com.shop.storageservice.service.BulkRestockService;
+import com.shop.storageservice.service.LowStockService;
 import com.shop.storageservice.service.StorageService;
+import com.shop.storageservice.service.StripedStockService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
-import java.util.Map;
 
 @RestController
 @RequestMapping("api/v1/storage")
 @RequiredArgsConstructor
 public class StorageController {
     private final StorageService service;
+    private final LowStockService lowStockService;
+    private final StripedStockService stripedStockService;
+    private final BulkRestockService bulkRestockService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("check")
     public Boolean isInStorage(@RequestParam Long id, @RequestParam Integer requiredQuantity) {
@@ -49,8 +71,19 @@ public class StorageController {
     @PostMapping("add")
     public void raiseProductQuantityById(
             @RequestBody ProductDuplicateDTO productDuplicateDTO,
-            @RequestParam Integer quantityAdded) {
-        service.raiseProductQuantityById(productDuplicateDTO, quantityAdded);
+            @RequestParam Integer quantityAdded,
+            @RequestParam(required = false) Long warehouseId) {
+        service.raiseProductQuantityById(productDuplicateDTO, quantityAdded, warehouseId);
+    }
+
+    @PostMapping(value = "add/bulk", consumes = {"text/csv", MediaType.APPLICATION_NDJSON_VALUE})
+    public BulkRestockResultDTO bulkRestock(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                            InputStream body) throws IOException {
+        StockFileFormat format = MediaType.APPLICATION_NDJSON.isCompatibleWith(contentType)
+                ? StockFileFormat.NDJSON
+                : StockFileFormat.CSV;
+        Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        return bulkRestockService.restock(new BufferedReader(new InputStreamReader(body, charset)), format);
     }
 
     @PutMapping("delete")
@@ -58,16 +91,26 @@ public class StorageController {
         service.reduceQuantityById(orderDuplicateDTO);
     }
 
-    @PostMapping(value = "check/order",consumes = {"application/json", "application/json;charset=UTF-8"}, produces = "application/json")
-    public Boolean isOrderInStorage(@RequestBody CartDTO cart) {
-        return service.isOrderInStorage(cart.getCart());
-    }
-
-    @PostMapping("find/order/out/{customerId}")
-    public Map<ProductDuplicateDTO, Integer> findOutOfStorageProduct(
+    @PostMapping(value = "check/order/{customerId}", consumes = {"application/json", "application/json;charset=UTF-8"}, produces = "application/json")
+    public InventoryStatusDTO checkOrder(
             @RequestBody CartDTO cart,
             @PathVariable(name = "customerId") String customerId) {
-        return service.findOutOfStorageProduct(cart.getCart(), customerId);
+        return service.checkOrder(cart.getCart(), customerId);
+    }
+
+    @PutMapping("threshold/{id}")
+    public void updateLowStockThreshold(@PathVariable Long id, @RequestParam Integer lowStockThreshold) {
+        lowStockService.updateThreshold(id, lowStockThreshold);
+    }
+
+    @PutMapping("hot/{id}")
+    public void enableStriping(@PathVariable Long id, @RequestParam Integer stripes) {
+        stripedStockService.enable(id, stripes);
+    }
+
+    @DeleteMapping("hot/{id}")
+    public void disableStriping(@PathVariable Long id) {
+        stripedStockService.disable(id);
     }
 
     @GetMapping("find/all")
@@ -75,4 +118,29 @@ public class StorageController {
         return service.findAllStorageWithQuantity();
     }
 
+    @GetMapping("find/page")
+    public ProductWithQuantityPageDTO findPageStorageWithQuantity(
+            @RequestParam(required = false) Long afterId,
+            @RequestParam(defaultValue = "100") Integer size) {
+        return service.findPageStorageWithQuantity(afterId, size);
+    }
+
+    @GetMapping(value = "find/all/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllStorageWithQuantity() {
+        StreamingResponseBody body = outputStream -> service.streamAllStorageWithQuantity(chunk -> {
+            try {
+                for (ProductWithQuantityDTO product : chunk) {
+                    outputStream.write(objectMapper.writeValueAsBytes(product));
+                    outputStream.write('\n');
+                }
+                outputStream.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
 }
@@ -0,0 +1,42 @@
+package com.shop.storageservice.controller;
+
+import com.shop.storageservice.dto.AllocationDTO;
+import com.shop.storageservice.dto.StorageDuplicateDTO;
+import com.shop.storageservice.model.Warehouse;
+import com.shop.storageservice.service.AllocationService;
+import com.shop.storageservice.service.WarehouseStockService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("api/v1/storage/warehouse")
+@RequiredArgsConstructor
+public class WarehouseController {
+    private final WarehouseStockService warehouseStockService;
+    private final AllocationService allocationService;
+
+    @PostMapping("save")
+    public Warehouse saveWarehouse(@RequestBody Warehouse warehouse) {
+        return warehouseStockService.saveWarehouse(warehouse);
+    }
+
+    @GetMapping("find/all")
+    public List<Warehouse> findAllWarehouse() {
+        return warehouseStockService.findAllWarehouse();
+    }
+
+    @GetMapping("stock/{productId}")
+    public Map<Long, Integer> findStockByWarehouseId(@PathVariable Long productId) {
+        return warehouseStockService.findStockByWarehouseId(productId);
+    }
+
+    @PostMapping("allocate")
+    public AllocationDTO allocate(@RequestBody List<StorageDuplicateDTO> cart,
+                                  @RequestParam(required = false) Double latitude,
+                                  @RequestParam(required = false) Double longitude) {
+        return allocationService.allocate(cart, latitude, longitude);
+    }
+}
@@ -0,0 +1,49 @@
+package com.shop.storageservice.datasource;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Measures how far the replica is behind the primary every {@code replica.lag-check-delay} milliseconds.
+ * The replica is fresh while its lag is at most {@code replica.max-lag} milliseconds. It is stale until the
+ * first check and after a failed check, so reads fall back to the primary whenever the lag is unknown.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class ReplicaLagMonitor {
+
+    // an idle replica that has replayed everything it received is not behind, however old its last replay;
+    // a server that is not in recovery is the primary itself
+    static final String LAG_QUERY = "SELECT CASE " +
+            "WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+            "ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 END";
+
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final long maxLag;
+
+    private volatile boolean fresh;
+
+    public boolean isFresh() {
+        return fresh;
+    }
+
+    @Scheduled(fixedDelayString = "${replica.lag-check-delay}")
+    public void check() {
+        Long lag;
+        try {
+            lag = replicaJdbcTemplate.queryForObject(LAG_QUERY, Long.class);
+        } catch (DataAccessException e) {
+            lag = null;
+            log.warn("Replica lag check failed: {}", e.getMessage());
+        }
+        boolean wasFresh = fresh;
+        fresh = lag != null && lag <= maxLag;
+        if (fresh != wasFresh) {
+            log.info("Replica is {} with lag: {} ms, reads go to the {}", fresh ? "fresh" : "stale", lag,
+                    fresh ? "replica" : "primary");
+        }
+    }
+}
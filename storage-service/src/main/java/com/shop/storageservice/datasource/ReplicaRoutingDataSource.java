@@ -0,0 +1,28 @@
+package com.shop.storageservice.datasource;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Sends the connections of read-only transactions to the replica while it is fresh, and all others to the
+ * primary. It has to sit behind a {@link LazyConnectionDataSourceProxy}, because a transaction asks for its
+ * connection before it is marked read-only. Reads whose result is cached must not run read-only, or a lagging
+ * value would outlive the lag.
+ */
+@RequiredArgsConstructor
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+
+    private final ReplicaLagMonitor replicaLagMonitor;
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly() && replicaLagMonitor.isFresh()
+                ? REPLICA
+                : PRIMARY;
+    }
+}
@@ -0,0 +1,18 @@
+package com.shop.storageservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AllocationLineDTO {
+
+    // null for stock that is not assigned to any warehouse
+    private Long warehouseId;
+    private Long productId;
+    private Integer quantity;
+}
@@ -0,0 +1,17 @@
+package com.shop.storageservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class BulkRestockResultDTO {
+
+    private String reference;
+    private Integer restockedLines;
+    private Integer skippedLines;
+}
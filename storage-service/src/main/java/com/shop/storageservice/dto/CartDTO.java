@@ -5,7 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.util.Map;
+import java.util.List;
 
 @NoArgsConstructor
 @AllArgsConstructor
@@ -13,6 +13,6 @@ import java.util.Map;
 @Builder
 public class CartDTO {
 
-    private Map<ProductDuplicateDTO, Integer> cart;
+    private List<CartItemDTO> cart;
 
 }
@@ -6,7 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
-import java.util.Map;
+import java.util.List;
 
 @NoArgsConstructor
 @AllArgsConstructor
@@ -16,7 +16,7 @@ public class OrderWithProductCartDTO {
 
     private String id;
     private String customerId;
-    private Map<ProductDuplicateDTO, Integer> cart;
+    private List<CartItemDTO> cart;
     private BigDecimal cost;
 
 }
\ No newline at end of file
@@ -0,0 +1,19 @@
+package com.shop.storageservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductWithQuantityPageDTO {
+
+    private List<ProductWithQuantityDTO> content;
+    private Long nextAfterId;
+
+}
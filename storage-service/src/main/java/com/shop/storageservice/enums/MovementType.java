@@ -0,0 +1,9 @@
+package com.shop.storageservice.enums;
+
+public enum MovementType {
+    RESTOCK,
+    ORDER,
+    ADJUSTMENT,
+    RESERVATION,
+    RELEASE
+}
@@ -0,0 +1,6 @@
+package com.shop.storageservice.enums;
+
+public enum StockFileFormat {
+    CSV,
+    NDJSON
+}
@@ -0,0 +1,17 @@
+package com.shop.storageservice.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.Collection;
+
+/**
+ * Published whenever the quantity or low stock threshold of products changes.
+ * Listeners bound to the transaction see it only after commit.
+ */
+@Data
+@AllArgsConstructor
+public class StockChangedEvent {
+
+    private Collection<Long> listProductId;
+}
@@ -0,0 +1,46 @@
+package com.shop.storageservice.metrics;
+
+import com.shop.storageservice.repository.StorageRepository;
+import com.shop.storageservice.service.LowStockService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes {@code inventory.skus}, the number of products in storage, and {@code inventory.low.stock}, the
+ * size of the low stock index. The count scans the table, so it is taken every
+ * {@code inventory-metrics.refresh-delay} milliseconds on the replica rather than on every scrape, and is not
+ * published until the first count; the low stock index is one Redis call, so it is read when scraped.
+ */
+@Component
+@RequiredArgsConstructor
+public class InventoryMeterBinder implements MeterBinder {
+
+    private final StorageRepository repository;
+    private final LowStockService lowStockService;
+
+    private volatile double skus = Double.NaN;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("inventory.skus", this, binder -> binder.skus)
+                .description("Products in storage")
+                .register(registry);
+        Gauge.builder("inventory.low.stock", lowStockService, InventoryMeterBinder::countLowStock)
+                .description("Products at or below their low stock threshold")
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${inventory-metrics.refresh-delay}")
+    public void refresh() {
+        skus = repository.count();
+    }
+
+    private static double countLowStock(LowStockService lowStockService) {
+        Long lowStock = lowStockService.countLowStock();
+        return lowStock != null ? lowStock : 0;
+    }
+}
@@ -0,0 +1,29 @@
+package com.shop.storageservice.model;
+
+import com.shop.storageservice.enums.MovementType;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "inventory_movement", indexes = @Index(columnList = "productId, createdAt"))
+@Builder
+@NoArgsConstructor
+@Data
+@AllArgsConstructor
+public class InventoryMovement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    private Long productId;
+    private Integer quantityChange;
+    @Enumerated(EnumType.STRING)
+    private MovementType type;
+    private String reference;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,25 @@
+package com.shop.storageservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "inventory_snapshot", indexes = @Index(columnList = "productId, coveredUntil"))
+@Builder
+@NoArgsConstructor
+@Data
+@AllArgsConstructor
+public class InventorySnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    private Long productId;
+    private Integer quantity;
+    private LocalDateTime coveredUntil;
+}
@@ -0,0 +1,22 @@
+package com.shop.storageservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "processed_order", indexes = @Index(columnList = "processedAt"))
+@Builder
+@NoArgsConstructor
+@Data
+@AllArgsConstructor
+public class ProcessedOrder {
+
+    @Id
+    private String orderId;
+    private LocalDateTime processedAt;
+}
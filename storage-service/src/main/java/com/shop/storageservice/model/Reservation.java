@@ -0,0 +1,31 @@
+package com.shop.storageservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "reservation", indexes = {
+        @Index(columnList = "orderId"),
+        @Index(columnList = "expiresAt")
+})
+@Builder
+@NoArgsConstructor
+@Data
+@AllArgsConstructor
+public class Reservation {
+
+    @Id
+    @GeneratedValue
+    private Long id;
+    private String orderId;
+    private Long productId;
+    // null when the quantity was taken from unassigned stock
+    private Long warehouseId;
+    private Integer quantity;
+    private LocalDateTime expiresAt;
+}
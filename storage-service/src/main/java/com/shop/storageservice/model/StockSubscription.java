@@ -0,0 +1,25 @@
+package com.shop.storageservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "stock_subscription")
+@IdClass(StockSubscriptionId.class)
+@Builder
+@NoArgsConstructor
+@Data
+@AllArgsConstructor
+public class StockSubscription {
+
+    @Id
+    private Long productId;
+    @Id
+    private String customerId;
+    private LocalDateTime subscribedAt;
+}
@@ -1,12 +1,17 @@
 package com.shop.storageservice.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+import org.hibernate.annotations.Formula;
 
 @Entity
 @Table(name = "storage")
@@ -19,4 +24,22 @@ public class Storage {
     @Id
     private Long productId;
     private Integer quantity;
+    private Integer lowStockThreshold;
+
+    // bumped by every write of the row, including the native quantity updates, so an entity save
+    // fails instead of overwriting a change made after the entity was read
+    @JsonIgnore
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+
+    // stock of a hot product spread over its storage_stripe rows
+    @JsonIgnore
+    @Formula("(SELECT COALESCE(SUM(ss.quantity), 0) FROM storage_stripe ss WHERE ss.product_id = product_id)")
+    private Integer stripedQuantity;
+
+    public int availableQuantity() {
+        return quantity + (stripedQuantity != null ? stripedQuantity : 0);
+    }
 }
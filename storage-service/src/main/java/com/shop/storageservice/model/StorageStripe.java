@@ -0,0 +1,23 @@
+package com.shop.storageservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "storage_stripe")
+@IdClass(StorageStripeId.class)
+@Builder
+@NoArgsConstructor
+@Data
+@AllArgsConstructor
+public class StorageStripe {
+
+    @Id
+    private Long productId;
+    @Id
+    private Integer stripe;
+    private Integer quantity;
+}
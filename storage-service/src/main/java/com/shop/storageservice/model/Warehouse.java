@@ -0,0 +1,25 @@
+package com.shop.storageservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "warehouse")
+@Builder
+@NoArgsConstructor
+@Data
+@AllArgsConstructor
+public class Warehouse {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    private String name;
+    private Double latitude;
+    private Double longitude;
+    // orders warehouses for allocations without a destination, lower first
+    private Integer priority;
+}
@@ -0,0 +1,23 @@
+package com.shop.storageservice.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Entity
+@Table(name = "warehouse_stock", indexes = @Index(columnList = "productId"))
+@IdClass(WarehouseStockId.class)
+@Builder
+@NoArgsConstructor
+@Data
+@AllArgsConstructor
+public class WarehouseStock {
+
+    @Id
+    private Long warehouseId;
+    @Id
+    private Long productId;
+    private Integer quantity;
+}
@@ -0,0 +1,16 @@
+package com.shop.storageservice.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WarehouseStockId implements Serializable {
+
+    private Long warehouseId;
+    private Long productId;
+}
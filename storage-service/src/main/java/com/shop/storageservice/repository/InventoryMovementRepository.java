@@ -0,0 +1,19 @@
+package com.shop.storageservice.repository;
+
+import com.shop.storageservice.model.InventoryMovement;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface InventoryMovementRepository extends JpaRepository<InventoryMovement, Long> {
+
+    List<InventoryMovement> findAllByProductIdAndCreatedAtBetweenOrderById(Long productId, LocalDateTime from, LocalDateTime to);
+
+    @Query("SELECT COALESCE(SUM(m.quantityChange), 0) FROM InventoryMovement m " +
+            "WHERE m.productId = :productId AND m.createdAt > :from AND m.createdAt <= :to")
+    Long sumQuantityChange(Long productId, LocalDateTime from, LocalDateTime to);
+}
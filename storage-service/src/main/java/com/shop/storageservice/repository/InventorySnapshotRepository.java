@@ -0,0 +1,14 @@
+package com.shop.storageservice.repository;
+
+import com.shop.storageservice.model.InventorySnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface InventorySnapshotRepository extends JpaRepository<InventorySnapshot, Long> {
+
+    Optional<InventorySnapshot> findFirstByProductIdAndCoveredUntilLessThanEqualOrderByCoveredUntilDesc(Long productId, LocalDateTime at);
+}
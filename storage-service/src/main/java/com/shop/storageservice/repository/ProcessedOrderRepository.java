@@ -0,0 +1,17 @@
+package com.shop.storageservice.repository;
+
+import com.shop.storageservice.model.ProcessedOrder;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface ProcessedOrderRepository extends JpaRepository<ProcessedOrder, String> {
+
+    @Modifying
+    @Query("DELETE FROM ProcessedOrder p WHERE p.processedAt < :time")
+    int deleteAllByProcessedAtBefore(LocalDateTime time);
+}
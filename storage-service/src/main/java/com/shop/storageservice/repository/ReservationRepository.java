@@ -0,0 +1,26 @@
+package com.shop.storageservice.repository;
+
+import com.shop.storageservice.model.Reservation;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ReservationRepository extends JpaRepository<Reservation, Long> {
+
+    List<Reservation> findAllByOrderId(String orderId);
+
+    List<Reservation> findAllByExpiresAtBefore(LocalDateTime time);
+
+    @Modifying
+    @Query("DELETE FROM Reservation r WHERE r.orderId = :orderId")
+    int deleteAllByOrderId(String orderId);
+
+    @Modifying
+    @Query("DELETE FROM Reservation r WHERE r.id = :id")
+    int deleteReservationById(Long id);
+}
@@ -1,18 +1,48 @@
 package com.shop.storageservice.repository;
 
 import com.shop.storageservice.model.Storage;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface StorageRepository extends JpaRepository<Storage, Long> {
 
     @Modifying
     @Query(value = "UPDATE Storage " +
-            "SET quantity = quantity + :quantityAdded " +
-            "WHERE id = :addedId",
+            "SET quantity = quantity + :quantityAdded, version = version + 1 " +
+            "WHERE product_id = :addedId",
             nativeQuery = true)
     void raiseProductQuantityById(Long addedId, Integer quantityAdded);
+
+    @Modifying
+    @Query(value = "UPDATE Storage " +
+            "SET quantity = quantity - :reservedQuantity, version = version + 1 " +
+            "WHERE product_id = :reservedId AND quantity >= :reservedQuantity",
+            nativeQuery = true)
+    int reserveProductQuantityById(Long reservedId, Integer reservedQuantity);
+
+    @Modifying
+    @Query(value = "UPDATE Storage " +
+            "SET low_stock_threshold = :lowStockThreshold, version = version + 1 " +
+            "WHERE product_id = :productId",
+            nativeQuery = true)
+    int updateLowStockThresholdById(Long productId, Integer lowStockThreshold);
+
+    @Query("SELECT s FROM Storage s " +
+            "WHERE s.quantity + s.stripedQuantity <= COALESCE(s.lowStockThreshold, :defaultThreshold)")
+    List<Storage> findAllLowStock(Integer defaultThreshold);
+
+    List<Storage> findAllByProductIdGreaterThanOrderByProductId(Long afterId, Limit limit);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM Storage s WHERE s.productId = :productId")
+    Optional<Storage> findByIdForUpdate(Long productId);
 }
@@ -0,0 +1,9 @@
+package com.shop.storageservice.repository;
+
+import com.shop.storageservice.model.Warehouse;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface WarehouseRepository extends JpaRepository<Warehouse, Long> {
+}
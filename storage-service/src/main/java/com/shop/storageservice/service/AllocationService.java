@@ -0,0 +1,130 @@
+package com.shop.storageservice.service;
+
+import com.shop.storageservice.dto.AllocationDTO;
+import com.shop.storageservice.dto.AllocationLineDTO;
+import com.shop.storageservice.dto.StorageDuplicateDTO;
+import com.shop.storageservice.model.Warehouse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Splits a cart across warehouses from the warehouse stock in memory. The nearest warehouse that holds the
+ * whole cart ships it in one parcel; otherwise every line is taken from the nearest warehouses that hold it,
+ * and the rest from unassigned stock. Warehouses are ordered by distance to the destination, or by priority
+ * when there is no destination.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AllocationService {
+
+    private static final double EARTH_RADIUS_KM = 6371;
+
+    private final WarehouseStockService warehouseStockService;
+    private final StorageService storageService;
+
+    public AllocationDTO allocate(List<StorageDuplicateDTO> cart, Double latitude, Double longitude) {
+        Map<Long, Integer> required = new LinkedHashMap<>();
+        for (StorageDuplicateDTO line : cart) {
+            required.merge(line.getProductId(), line.getQuantity(), Integer::sum);
+        }
+
+        Map<Long, Integer> available = storageService.findAllQuantityById(required.keySet());
+        List<Long> listOutOfStorageId = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : required.entrySet()) {
+            Integer quantity = available.get(entry.getKey());
+            if (quantity == null || quantity < entry.getValue()) {
+                listOutOfStorageId.add(entry.getKey());
+            }
+        }
+
+        AllocationDTO allocationDTO = AllocationDTO.builder()
+                .isOrderInStorage(listOutOfStorageId.isEmpty())
+                .lines(listOutOfStorageId.isEmpty() ? plan(required, latitude, longitude) : List.of())
+                .listOutOfStorageId(listOutOfStorageId)
+                .build();
+        log.info("Allocated cart of {} products: {}", required.size(), allocationDTO);
+        return allocationDTO;
+    }
+
+    public List<AllocationLineDTO> plan(Map<Long, Integer> required, Double latitude, Double longitude) {
+        List<Warehouse> warehouses = order(warehouseStockService.findAllWarehouse(), latitude, longitude);
+        Map<Long, Map<Long, Integer>> stock = new HashMap<>();
+        for (Long productId : required.keySet()) {
+            stock.put(productId, warehouseStockService.findStockByWarehouseId(productId));
+        }
+
+        for (Warehouse warehouse : warehouses) {
+            if (holdsAll(warehouse.getId(), required, stock)) {
+                List<AllocationLineDTO> lines = new ArrayList<>();
+                required.forEach((productId, quantity) -> lines.add(AllocationLineDTO.builder()
+                        .warehouseId(warehouse.getId())
+                        .productId(productId)
+                        .quantity(quantity)
+                        .build()));
+                return lines;
+            }
+        }
+
+        List<AllocationLineDTO> lines = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : required.entrySet()) {
+            int remaining = entry.getValue();
+            for (Warehouse warehouse : warehouses) {
+                if (remaining == 0) {
+                    break;
+                }
+                int taken = Math.min(remaining, stock.get(entry.getKey()).getOrDefault(warehouse.getId(), 0));
+                if (taken > 0) {
+                    lines.add(AllocationLineDTO.builder()
+                            .warehouseId(warehouse.getId())
+                            .productId(entry.getKey())
+                            .quantity(taken)
+                            .build());
+                    remaining -= taken;
+                }
+            }
+            if (remaining > 0) {
+                lines.add(AllocationLineDTO.builder()
+                        .productId(entry.getKey())
+                        .quantity(remaining)
+                        .build());
+            }
+        }
+        return lines;
+    }
+
+    private boolean holdsAll(Long warehouseId, Map<Long, Integer> required, Map<Long, Map<Long, Integer>> stock) {
+        for (Map.Entry<Long, Integer> entry : required.entrySet()) {
+            if (stock.get(entry.getKey()).getOrDefault(warehouseId, 0) < entry.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private List<Warehouse> order(List<Warehouse> warehouses, Double latitude, Double longitude) {
+        List<Warehouse> ordered = new ArrayList<>(warehouses);
+        if (latitude != null && longitude != null) {
+            ordered.sort(Comparator.comparingDouble(warehouse -> distance(warehouse, latitude, longitude)));
+        } else {
+            ordered.sort(Comparator.comparing(Warehouse::getPriority, Comparator.nullsLast(Comparator.naturalOrder())));
+        }
+        return ordered;
+    }
+
+    // haversine distance in kilometres; warehouses without coordinates come last
+    private double distance(Warehouse warehouse, double latitude, double longitude) {
+        if (warehouse.getLatitude() == null || warehouse.getLongitude() == null) {
+            return Double.MAX_VALUE;
+        }
+        double latitudeDelta = Math.toRadians(warehouse.getLatitude() - latitude);
+        double longitudeDelta = Math.toRadians(warehouse.getLongitude() - longitude);
+        double a = Math.pow(Math.sin(latitudeDelta / 2), 2)
+                + Math.cos(Math.toRadians(latitude)) * Math.cos(Math.toRadians(warehouse.getLatitude()))
+                * Math.pow(Math.sin(longitudeDelta / 2), 2);
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.sqrt(a));
+    }
+}
@@ -0,0 +1,137 @@
+package com.shop.storageservice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.storageservice.dto.BulkRestockResultDTO;
+import com.shop.storageservice.dto.StorageDuplicateDTO;
+import com.shop.storageservice.enums.MovementType;
+import com.shop.storageservice.enums.StockFileFormat;
+import com.shop.storageservice.event.StockChangedEvent;
+import com.shop.storageservice.model.InventoryMovement;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Applies warehouse delivery files line by line without loading them into memory. Lines are merged per
+ * product and applied in batches of {@code bulk-restock.batch-size} products, each in its own transaction
+ * with one JDBC batch, one ledger batch, and one round of cache evictions and back-in-stock notifications.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BulkRestockService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final InventoryLedgerService inventoryLedgerService;
+    private final StockCache stockCache;
+    private final StockSubscriptionService stockSubscriptionService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+
+    @Value("${bulk-restock.batch-size}")
+    private Integer batchSize;
+
+    public BulkRestockResultDTO restock(BufferedReader reader, StockFileFormat format) throws IOException {
+        String reference = "bulk-" + UUID.randomUUID();
+        // products are applied in id order so that concurrent imports lock rows in the same order
+        Map<Long, Integer> batch = new TreeMap<>();
+        int batchLines = 0;
+        int restockedLines = 0;
+        int skippedLines = 0;
+        int lineNumber = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            StorageDuplicateDTO restock = parse(line, format);
+            if (restock == null || restock.getProductId() == null
+                    || restock.getQuantity() == null || restock.getQuantity() <= 0) {
+                // the first line of a CSV file may be its header
+                if (lineNumber > 1 || format != StockFileFormat.CSV) {
+                    skippedLines++;
+                    log.warn("Skipped line {} of bulk restock {}: {}", lineNumber, reference, line);
+                }
+                continue;
+            }
+
+            batch.merge(restock.getProductId(), restock.getQuantity(), Integer::sum);
+            batchLines++;
+            if (batch.size() >= batchSize) {
+                applyBatch(batch, reference);
+                restockedLines += batchLines;
+                batch = new TreeMap<>();
+                batchLines = 0;
+            }
+        }
+        if (!batch.isEmpty()) {
+            applyBatch(batch, reference);
+            restockedLines += batchLines;
+        }
+
+        log.info("Bulk restock {} applied {} lines, skipped {} lines", reference, restockedLines, skippedLines);
+        return BulkRestockResultDTO.builder()
+                .reference(reference)
+                .restockedLines(restockedLines)
+                .skippedLines(skippedLines)
+                .build();
+    }
+
+    private void applyBatch(Map<Long, Integer> restocked, String reference) {
+        List<Object[]> batchArgs = new ArrayList<>();
+        List<InventoryMovement> movements = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : restocked.entrySet()) {
+            batchArgs.add(new Object[]{entry.getKey(), entry.getValue()});
+            movements.add(InventoryMovement.builder()
+                    .productId(entry.getKey())
+                    .quantityChange(entry.getValue())
+                    .type(MovementType.RESTOCK)
+                    .reference(reference)
+                    .build());
+        }
+        List<Long> listProductId = new ArrayList<>(restocked.keySet());
+
+        transactionTemplate.execute(status -> {
+            jdbcTemplate.batchUpdate("INSERT INTO storage (product_id, quantity) " +
+                    "VALUES (?, ?) " +
+                    "ON CONFLICT (product_id) DO UPDATE " +
+                    "SET quantity = storage.quantity + EXCLUDED.quantity, version = storage.version + 1", batchArgs);
+            inventoryLedgerService.recordAll(movements);
+            stockCache.evictAll(listProductId);
+            eventPublisher.publishEvent(new StockChangedEvent(listProductId));
+            stockSubscriptionService.notifyAllRestocked(listProductId);
+            return null;
+        });
+        log.info("Bulk restock {} restocked {} products", reference, listProductId.size());
+    }
+
+    private StorageDuplicateDTO parse(String line, StockFileFormat format) {
+        try {
+            if (format == StockFileFormat.NDJSON) {
+                return objectMapper.readValue(line, StorageDuplicateDTO.class);
+            }
+            String[] columns = line.split(",");
+            if (columns.length != 2) {
+                return null;
+            }
+            return StorageDuplicateDTO.builder()
+                    .productId(Long.valueOf(columns[0].trim()))
+                    .quantity(Integer.valueOf(columns[1].trim()))
+                    .build();
+        } catch (JsonProcessingException | NumberFormatException e) {
+            return null;
+        }
+    }
+}
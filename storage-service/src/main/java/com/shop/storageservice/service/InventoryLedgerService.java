@@ -0,0 +1,120 @@
+package com.shop.storageservice.service;
+
+import com.shop.storageservice.enums.MovementType;
+import com.shop.storageservice.model.InventoryMovement;
+import com.shop.storageservice.model.InventorySnapshot;
+import com.shop.storageservice.repository.InventoryMovementRepository;
+import com.shop.storageservice.repository.InventorySnapshotRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Append-only ledger of stock movements. Every change of {@code storage.quantity} is recorded in the same
+ * transaction, so the stock at any point in time is the latest snapshot before it plus the movements after it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class InventoryLedgerService {
+
+    // snapshots written on startup for stock that existed before its movements were recorded
+    public static final LocalDateTime OPENING_BALANCE_TIME = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final InventoryMovementRepository movementRepository;
+    private final InventorySnapshotRepository snapshotRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${inventory-ledger.snapshot-lag}")
+    private Long snapshotLag;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(Long productId, Integer quantityChange, MovementType type, String reference) {
+        recordAll(List.of(InventoryMovement.builder()
+                .productId(productId)
+                .quantityChange(quantityChange)
+                .type(type)
+                .reference(reference)
+                .build()));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAll(Collection<InventoryMovement> movements) {
+        Timestamp createdAt = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batchArgs = new ArrayList<>();
+        for (InventoryMovement movement : movements) {
+            if (movement.getQuantityChange() != 0) {
+                batchArgs.add(new Object[]{movement.getProductId(), movement.getQuantityChange(),
+                        movement.getType().name(), movement.getReference(), createdAt});
+            }
+        }
+        if (batchArgs.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO inventory_movement (product_id, quantity_change, type, reference, created_at) " +
+                "VALUES (?, ?, ?, ?, ?)", batchArgs);
+        log.info("Recorded {} inventory movements", batchArgs.size());
+    }
+
+    @Transactional(readOnly = true)
+    public Integer findQuantityAt(Long productId, LocalDateTime at) {
+        InventorySnapshot snapshot = snapshotRepository
+                .findFirstByProductIdAndCoveredUntilLessThanEqualOrderByCoveredUntilDesc(productId, at)
+                .orElse(null);
+        LocalDateTime from = snapshot != null ? snapshot.getCoveredUntil() : OPENING_BALANCE_TIME;
+        int quantity = snapshot != null ? snapshot.getQuantity() : 0;
+        quantity += movementRepository.sumQuantityChange(productId, from, at).intValue();
+        log.info("Derived quantity of product ID: {} at {}: {}", productId, at, quantity);
+        return quantity;
+    }
+
+    @Transactional(readOnly = true)
+    public List<InventoryMovement> findMovements(Long productId, LocalDateTime from, LocalDateTime to) {
+        return movementRepository.findAllByProductIdAndCreatedAtBetweenOrderById(productId, from, to);
+    }
+
+    @Scheduled(cron = "${inventory-ledger.snapshot-cron}")
+    @Transactional
+    public void takeSnapshots() {
+        // movements younger than the lag may still belong to open transactions, so they stay in the tail
+        Timestamp coveredUntil = Timestamp.valueOf(LocalDateTime.now().minus(Duration.ofMillis(snapshotLag)));
+        int taken = jdbcTemplate.update("INSERT INTO inventory_snapshot (product_id, quantity, covered_until) " +
+                "SELECT m.product_id, COALESCE(s.quantity, 0) + SUM(m.quantity_change), ? " +
+                "FROM inventory_movement m " +
+                "LEFT JOIN (SELECT DISTINCT ON (product_id) product_id, quantity, covered_until " +
+                "FROM inventory_snapshot " +
+                "ORDER BY product_id, covered_until DESC) s ON s.product_id = m.product_id " +
+                "WHERE m.created_at > COALESCE(s.covered_until, ?) AND m.created_at <= ? " +
+                "GROUP BY m.product_id, s.quantity",
+                coveredUntil, Timestamp.valueOf(OPENING_BALANCE_TIME), coveredUntil);
+        log.info("Took {} inventory snapshots covering movements until {}", taken, coveredUntil);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void openBalances() {
+        int opened = jdbcTemplate.update("INSERT INTO inventory_snapshot (product_id, quantity, covered_until) " +
+                "SELECT st.product_id, st.quantity + COALESCE((SELECT SUM(ss.quantity) FROM storage_stripe ss " +
+                "WHERE ss.product_id = st.product_id), 0) - COALESCE(SUM(m.quantity_change), 0), ? " +
+                "FROM storage st " +
+                "LEFT JOIN inventory_movement m ON m.product_id = st.product_id " +
+                "WHERE NOT EXISTS (SELECT 1 FROM inventory_snapshot s WHERE s.product_id = st.product_id) " +
+                "GROUP BY st.product_id, st.quantity",
+                Timestamp.valueOf(OPENING_BALANCE_TIME));
+        log.info("Opened inventory ledger balances for {} products", opened);
+    }
+}
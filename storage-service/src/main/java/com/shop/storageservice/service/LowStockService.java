@@ -0,0 +1,152 @@
+package com.shop.storageservice.service;
+
+import com.shop.storageservice.dto.StorageDuplicateDTO;
+import com.shop.storageservice.event.StockChangedEvent;
+import com.shop.storageservice.model.Storage;
+import com.shop.storageservice.repository.StorageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * Keeps the products at or below their low stock threshold in a Redis sorted set scored by quantity,
+ * so the daily report reads only the low items and a product crossing its threshold is detected once.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LowStockService {
+
+    public static final String LOW_STOCK_KEY = "storage:low-stock";
+    public static final String REBUILD_KEY = LOW_STOCK_KEY + ":rebuild";
+    public static final String REBUILD_LOCK_KEY = LOW_STOCK_KEY + ":rebuild-lock";
+
+    private final StorageRepository repository;
+    private final StringRedisTemplate redisTemplate;
+    private final KafkaTemplate<String, List<StorageDuplicateDTO>> kafkaProductVerification;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${low-stock.default-threshold}")
+    private Integer defaultThreshold;
+
+    @Value("${low-stock.threshold-crossed-event}")
+    private Boolean thresholdCrossedEvent;
+
+    @Value("${low-stock.rebuild-lock-timeout}")
+    private Long rebuildLockTimeout;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    // a read-write transaction keeps the read on the primary, which the replica may not have caught up with yet
+    @TransactionalEventListener(fallbackExecution = true)
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void onStockChanged(StockChangedEvent event) {
+        refresh(event.getListProductId());
+    }
+
+    public void refresh(Collection<Long> listProductId) {
+        Map<Long, Storage> storageById = new HashMap<>();
+        for (Storage storage : repository.findAllById(listProductId)) {
+            storageById.put(storage.getProductId(), storage);
+        }
+
+        ZSetOperations<String, String> lowStock = redisTemplate.opsForZSet();
+        List<StorageDuplicateDTO> productsCrossed = new ArrayList<>();
+        for (Long productId : listProductId) {
+            Storage storage = storageById.get(productId);
+            if (storage != null && storage.availableQuantity() <= thresholdOf(storage)) {
+                // add returns true only for a product that was not low before
+                if (Boolean.TRUE.equals(lowStock.add(LOW_STOCK_KEY, productId.toString(), storage.availableQuantity()))) {
+                    productsCrossed.add(StorageDuplicateDTO.builder()
+                            .productId(productId)
+                            .quantity(storage.availableQuantity())
+                            .build());
+                }
+            } else {
+                lowStock.remove(LOW_STOCK_KEY, productId.toString());
+            }
+        }
+
+        if (!productsCrossed.isEmpty() && thresholdCrossedEvent) {
+            kafkaProductVerification.send("product-name-identifier-topic", productsCrossed);
+            log.info("Sent low stock threshold crossed message for products: {}", productsCrossed);
+        }
+    }
+
+    public List<StorageDuplicateDTO> findAllLowStock() {
+        Set<ZSetOperations.TypedTuple<String>> lowStock = redisTemplate.opsForZSet().rangeWithScores(LOW_STOCK_KEY, 0, -1);
+        List<StorageDuplicateDTO> productsWithLack = new ArrayList<>();
+        if (lowStock != null) {
+            for (ZSetOperations.TypedTuple<String> tuple : lowStock) {
+                productsWithLack.add(StorageDuplicateDTO.builder()
+                        .productId(Long.valueOf(tuple.getValue()))
+                        .quantity(tuple.getScore().intValue())
+                        .build());
+            }
+        }
+        return productsWithLack;
+    }
+
+    public Long countLowStock() {
+        return redisTemplate.opsForZSet().zCard(LOW_STOCK_KEY);
+    }
+
+    @Transactional
+    public void updateThreshold(Long productId, Integer lowStockThreshold) {
+        repository.updateLowStockThresholdById(productId, lowStockThreshold);
+        eventPublisher.publishEvent(new StockChangedEvent(List.of(productId)));
+        log.info("Low stock threshold of product ID: {} set to {}", productId, lowStockThreshold);
+    }
+
+    // only one instance scans the table: the lock is kept until it expires, so the instances started after it
+    // use its index, which the refreshes keep current. The index is built under another key and renamed into
+    // place, so the report never reads it empty or half built
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Boolean locked = redisTemplate.opsForValue()
+                .setIfAbsent(REBUILD_LOCK_KEY, instanceId, Duration.ofMillis(rebuildLockTimeout));
+        if (!Boolean.TRUE.equals(locked)) {
+            log.info("Low stock index was rebuilt by another instance");
+            return;
+        }
+
+        try {
+            Set<ZSetOperations.TypedTuple<String>> lowStock = new HashSet<>();
+            for (Storage storage : repository.findAllLowStock(defaultThreshold)) {
+                lowStock.add(new DefaultTypedTuple<>(storage.getProductId().toString(), (double) storage.availableQuantity()));
+            }
+            if (lowStock.isEmpty()) {
+                redisTemplate.delete(LOW_STOCK_KEY);
+            } else {
+                redisTemplate.delete(REBUILD_KEY);
+                redisTemplate.opsForZSet().add(REBUILD_KEY, lowStock);
+                redisTemplate.rename(REBUILD_KEY, LOW_STOCK_KEY);
+            }
+            log.info("Rebuilt low stock index with {} products", lowStock.size());
+        } catch (RuntimeException e) {
+            // another instance may rebuild it at once, unless the lock already expired and is no longer ours
+            if (instanceId.equals(redisTemplate.opsForValue().get(REBUILD_LOCK_KEY))) {
+                redisTemplate.delete(REBUILD_LOCK_KEY);
+            }
+            throw e;
+        }
+    }
+
+    private int thresholdOf(Storage storage) {
+        return storage.getLowStockThreshold() != null ? storage.getLowStockThreshold() : defaultThreshold;
+    }
+}
@@ -0,0 +1,61 @@
+package com.shop.storageservice.service;
+
+import com.shop.storageservice.repository.ProcessedOrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProcessedOrderService {
+
+    private final ProcessedOrderRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${processed-order.time-to-live}")
+    private Long timeToLive;
+
+    @Transactional
+    public Set<String> markProcessed(List<String> listOrderId) {
+        if (listOrderId.isEmpty()) {
+            return new HashSet<>();
+        }
+        Timestamp processedAt = Timestamp.valueOf(LocalDateTime.now());
+        // one statement that returns the IDs it inserted: the counts of a batch are not per row once the
+        // driver rewrites it into a multi-row insert (reWriteBatchedInserts)
+        Set<String> newOrderId = new HashSet<>(jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement("INSERT INTO processed_order (order_id, processed_at) " +
+                    "SELECT DISTINCT unnest(CAST(? AS varchar[])), CAST(? AS timestamp) " +
+                    "ON CONFLICT DO NOTHING " +
+                    "RETURNING order_id");
+            statement.setArray(1, connection.createArrayOf("varchar", listOrderId.toArray()));
+            statement.setTimestamp(2, processedAt);
+            return statement;
+        }, (rs, rowNum) -> rs.getString(1)));
+
+        for (String orderId : new LinkedHashSet<>(listOrderId)) {
+            if (!newOrderId.contains(orderId)) {
+                log.warn("Order ID: {} was already processed, skipping", orderId);
+            }
+        }
+        return newOrderId;
+    }
+
+    @Scheduled(cron = "0 0 3 * * ?")
+    @Transactional
+    public void deleteExpired() {
+        int deleted = repository.deleteAllByProcessedAtBefore(LocalDateTime.now().minus(Duration.ofMillis(timeToLive)));
+        log.info("Deleted {} expired processed order IDs", deleted);
+    }
+}
@@ -0,0 +1,154 @@
+package com.shop.storageservice.service;
+
+import com.shop.storageservice.dto.AllocationLineDTO;
+import com.shop.storageservice.dto.CartItemDTO;
+import com.shop.storageservice.dto.InventoryStatusDTO;
+import com.shop.storageservice.dto.OrderWithProductCartDTO;
+import com.shop.storageservice.enums.MovementType;
+import com.shop.storageservice.event.StockChangedEvent;
+import com.shop.storageservice.model.InventoryMovement;
+import com.shop.storageservice.model.Reservation;
+import com.shop.storageservice.repository.ReservationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ReservationService {
+
+    private final ReservationRepository repository;
+    private final StockSubscriptionService stockSubscriptionService;
+    private final StockCache stockCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final InventoryLedgerService inventoryLedgerService;
+    private final StripedStockService stripedStockService;
+    private final WarehouseStockService warehouseStockService;
+    private final AllocationService allocationService;
+
+    @Value("${reservation.time-to-live}")
+    private Long timeToLive;
+
+    @Transactional
+    public InventoryStatusDTO reserve(OrderWithProductCartDTO orderWithProductCartDTO) {
+        String orderId = orderWithProductCartDTO.getId();
+        LocalDateTime expiresAt = LocalDateTime.now().plus(Duration.ofMillis(timeToLive));
+
+        // lines are taken in product id order so that concurrent reservations lock rows in the same order
+        List<CartItemDTO> lines = new ArrayList<>(orderWithProductCartDTO.getCart());
+        lines.sort(Comparator.comparing(CartItemDTO::getProductId));
+
+        Map<Long, Integer> reserved = new LinkedHashMap<>();
+        List<CartItemDTO> outOfStorageProduct = new ArrayList<>();
+        for (CartItemDTO line : lines) {
+            if (stripedStockService.take(line.getProductId(), line.getQuantity())) {
+                reserved.merge(line.getProductId(), line.getQuantity(), Integer::sum);
+            } else {
+                outOfStorageProduct.add(line);
+            }
+        }
+
+        if (outOfStorageProduct.isEmpty()) {
+            // the totals are held, the allocation only decides which warehouses the quantities come from
+            List<Reservation> reservations = new ArrayList<>();
+            for (AllocationLineDTO line : warehouseStockService.take(allocationService.plan(reserved, null, null))) {
+                reservations.add(Reservation.builder()
+                        .orderId(orderId)
+                        .productId(line.getProductId())
+                        .warehouseId(line.getWarehouseId())
+                        .quantity(line.getQuantity())
+                        .expiresAt(expiresAt)
+                        .build());
+            }
+            repository.saveAll(reservations);
+            List<Long> listReservedId = new ArrayList<>();
+            List<InventoryMovement> movements = new ArrayList<>();
+            for (Map.Entry<Long, Integer> entry : reserved.entrySet()) {
+                stockCache.evict(entry.getKey());
+                listReservedId.add(entry.getKey());
+                movements.add(InventoryMovement.builder()
+                        .productId(entry.getKey())
+                        .quantityChange(-entry.getValue())
+                        .type(MovementType.RESERVATION)
+                        .reference(orderId)
+                        .build());
+            }
+            inventoryLedgerService.recordAll(movements);
+            eventPublisher.publishEvent(new StockChangedEvent(listReservedId));
+            log.info("Reserved {} products for order ID: {} until {}", reserved.size(), orderId, expiresAt);
+        } else {
+            for (Map.Entry<Long, Integer> entry : reserved.entrySet()) {
+                stripedStockService.add(entry.getKey(), entry.getValue());
+            }
+            List<Long> listOutOfStorageId = new ArrayList<>();
+            for (CartItemDTO line : outOfStorageProduct) {
+                listOutOfStorageId.add(line.getProductId());
+            }
+            stockSubscriptionService.subscribe(orderWithProductCartDTO.getCustomerId(), listOutOfStorageId);
+            log.warn("Reservation for order ID: {} rejected, out of storage products: {}", orderId, outOfStorageProduct);
+        }
+
+        return InventoryStatusDTO.builder()
+                .isOrderInStorage(outOfStorageProduct.isEmpty())
+                .outOfStorageProducts(outOfStorageProduct)
+                .build();
+    }
+
+    @Transactional
+    public void commit(String orderId) {
+        int committed = repository.deleteAllByOrderId(orderId);
+        log.info("Committed {} reserved products for order ID: {}", committed, orderId);
+    }
+
+    @Transactional
+    public void release(String orderId) {
+        releaseAll(repository.findAllByOrderId(orderId));
+        log.info("Released reservation for order ID: {}", orderId);
+    }
+
+    @Scheduled(fixedDelayString = "${reservation.expiration-check-delay}")
+    @Transactional
+    public void releaseExpired() {
+        List<Reservation> expired = repository.findAllByExpiresAtBefore(LocalDateTime.now());
+        if (!expired.isEmpty()) {
+            releaseAll(expired);
+            log.info("Released {} expired reserved products", expired.size());
+        }
+    }
+
+    private void releaseAll(List<Reservation> reservations) {
+        Set<Long> listReleasedId = new HashSet<>();
+        List<InventoryMovement> movements = new ArrayList<>();
+        for (Reservation reservation : reservations) {
+            // the delete count guards against a concurrent commit or release of the same hold
+            if (repository.deleteReservationById(reservation.getId()) > 0) {
+                stripedStockService.add(reservation.getProductId(), reservation.getQuantity());
+                if (reservation.getWarehouseId() != null) {
+                    warehouseStockService.add(reservation.getWarehouseId(), reservation.getProductId(), reservation.getQuantity());
+                }
+                stockCache.evict(reservation.getProductId());
+                listReleasedId.add(reservation.getProductId());
+                movements.add(InventoryMovement.builder()
+                        .productId(reservation.getProductId())
+                        .quantityChange(reservation.getQuantity())
+                        .type(MovementType.RELEASE)
+                        .reference(reservation.getOrderId())
+                        .build());
+                log.info("Returned quantity: {} of product ID: {} to storage", reservation.getQuantity(), reservation.getProductId());
+            }
+        }
+        if (!listReleasedId.isEmpty()) {
+            inventoryLedgerService.recordAll(movements);
+            eventPublisher.publishEvent(new StockChangedEvent(listReleasedId));
+        }
+    }
+}
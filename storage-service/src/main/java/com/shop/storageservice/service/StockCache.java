@@ -0,0 +1,45 @@
+package com.shop.storageservice.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+@Component
+@RequiredArgsConstructor
+public class StockCache {
+
+    public static final String CACHE_NAME = "stock";
+
+    private final CacheManager cacheManager;
+
+    public Integer get(Long productId) {
+        return cache().get(productId, Integer.class);
+    }
+
+    public void put(Long productId, Integer quantity) {
+        cache().put(productId, quantity);
+    }
+
+    // caches a quantity read from the database, unless a write cached a newer one in the meantime
+    public void load(Long productId, Integer quantity) {
+        cache().putIfAbsent(productId, quantity);
+    }
+
+    public void evict(Long productId) {
+        cache().evict(productId);
+    }
+
+    public void evictAll(Collection<Long> listProductId) {
+        Cache cache = cache();
+        for (Long productId : listProductId) {
+            cache.evict(productId);
+        }
+    }
+
+    private Cache cache() {
+        return cacheManager.getCache(CACHE_NAME);
+    }
+}
@@ -0,0 +1,145 @@
+package com.shop.storageservice.service;
+
+import com.shop.storageservice.client.ProductClient;
+import com.shop.storageservice.dto.BackInStockDTO;
+import com.shop.storageservice.dto.ProductWithQuantityDTO;
+import com.shop.storageservice.dto.StorageDuplicateDTO;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StockSubscriptionService {
+
+    public static final String BACK_IN_STOCK_TOPIC = "back-in-stock-topic";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final KafkaTemplate<String, BackInStockDTO> kafkaBackInStock;
+    private final ProductClient productClient;
+
+    @Value("${stock-subscription.notification-batch-size}")
+    private Integer notificationBatchSize;
+
+    @Transactional
+    public void subscribe(String customerId, Collection<Long> listProductId) {
+        if (customerId == null || listProductId.isEmpty()) {
+            return;
+        }
+        Timestamp subscribedAt = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> batchArgs = new ArrayList<>();
+        for (Long productId : listProductId) {
+            batchArgs.add(new Object[]{productId, customerId, subscribedAt});
+        }
+        insertSubscriptions(batchArgs);
+        log.info("Customer ID: {} subscribed to back-in-stock notifications for product IDs: {}", customerId, listProductId);
+    }
+
+    @Transactional
+    public void notifyRestocked(Long productId, String productName) {
+        // subscriptions are claimed by deleting them, so concurrent restocks never notify a customer twice
+        List<String> listCustomerId = jdbcTemplate.queryForList("DELETE FROM stock_subscription " +
+                "WHERE product_id = ? " +
+                "RETURNING customer_id", String.class, productId);
+        if (listCustomerId.isEmpty()) {
+            return;
+        }
+
+        afterCommit(() -> send(productId, productName, listCustomerId));
+    }
+
+    @Transactional
+    public void notifyAllRestocked(Collection<Long> listProductId) {
+        if (listProductId.isEmpty()) {
+            return;
+        }
+        Map<Long, List<String>> customerIdByProductId = new HashMap<>();
+        jdbcTemplate.query("DELETE FROM stock_subscription " +
+                        "WHERE product_id IN (" + String.join(", ", Collections.nCopies(listProductId.size(), "?")) + ") " +
+                        "RETURNING product_id, customer_id",
+                rs -> {
+                    customerIdByProductId.computeIfAbsent(rs.getLong(1), id -> new ArrayList<>()).add(rs.getString(2));
+                }, listProductId.toArray());
+        if (customerIdByProductId.isEmpty()) {
+            return;
+        }
+
+        // names are looked up after the commit, so the restock does not wait for the product-service
+        afterCommit(() -> {
+            List<StorageDuplicateDTO> storageList = new ArrayList<>();
+            for (Long productId : customerIdByProductId.keySet()) {
+                storageList.add(StorageDuplicateDTO.builder().productId(productId).build());
+            }
+            Map<Long, String> productNameById = new HashMap<>();
+            try {
+                for (ProductWithQuantityDTO product : productClient.getAllProductWithQuantity(storageList)) {
+                    productNameById.put(product.getId(), product.getName());
+                }
+            } catch (RuntimeException e) {
+                log.error("Product names for back-in-stock notifications not found, subscriptions restored", e);
+                Timestamp subscribedAt = Timestamp.valueOf(LocalDateTime.now());
+                List<Object[]> batchArgs = new ArrayList<>();
+                customerIdByProductId.forEach((productId, listCustomerId) -> {
+                    for (String customerId : listCustomerId) {
+                        batchArgs.add(new Object[]{productId, customerId, subscribedAt});
+                    }
+                });
+                insertSubscriptions(batchArgs);
+                return;
+            }
+            customerIdByProductId.forEach((productId, listCustomerId) -> {
+                if (productNameById.containsKey(productId)) {
+                    send(productId, productNameById.get(productId), listCustomerId);
+                } else {
+                    log.warn("Product ID: {} not found, dropped back-in-stock subscriptions of {} customers",
+                            productId, listCustomerId.size());
+                }
+            });
+        });
+    }
+
+    private void insertSubscriptions(List<Object[]> batchArgs) {
+        jdbcTemplate.batchUpdate("INSERT INTO stock_subscription (product_id, customer_id, subscribed_at) " +
+                "VALUES (?, ?, ?) " +
+                "ON CONFLICT DO NOTHING", batchArgs);
+    }
+
+    private void send(Long productId, String productName, List<String> listCustomerId) {
+        int sent = 0;
+        for (int from = 0; from < listCustomerId.size(); from += notificationBatchSize) {
+            int to = Math.min(from + notificationBatchSize, listCustomerId.size());
+            kafkaBackInStock.send(BACK_IN_STOCK_TOPIC, String.valueOf(productId), BackInStockDTO.builder()
+                    .productId(productId)
+                    .productName(productName)
+                    .listCustomerId(new ArrayList<>(listCustomerId.subList(from, to)))
+                    .build());
+            sent++;
+        }
+        log.info("Sent {} back-in-stock notifications for product ID: {} to {} customers",
+                sent, productId, listCustomerId.size());
+    }
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
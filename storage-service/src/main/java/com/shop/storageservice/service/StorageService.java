@@ -1,27 +1,30 @@
 package com.shop.storageservice.service;
 
-import com.shop.storageservice.client.CustomerClient;
 import com.shop.storageservice.client.ProductClient;
 import com.shop.storageservice.dto.*;
+import com.shop.storageservice.enums.MovementType;
+import com.shop.storageservice.event.StockChangedEvent;
+import com.shop.storageservice.model.InventoryMovement;
 import com.shop.storageservice.model.Storage;
 import com.shop.storageservice.repository.StorageRepository;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
+import java.util.function.Consumer;
 
 @Data
 @Service
@@ -32,140 +35,335 @@ public class StorageService {
     private final KafkaTemplate<String, List<StorageDuplicateDTO>> kafkaProductVerification;
 
     private final StorageRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ProcessedOrderService processedOrderService;
+    private final StockCache stockCache;
+    private final StockSubscriptionService stockSubscriptionService;
+    private final LowStockService lowStockService;
+    private final StripedStockService stripedStockService;
+    private final WarehouseStockService warehouseStockService;
+    private final InventoryLedgerService inventoryLedgerService;
+    private final ApplicationEventPublisher eventPublisher;
 
-    private final CustomerClient customerClient;
     private final ProductClient productClient;
 
-    private Map<Long, String> outMapWithId = new HashMap<>();
+    @Value("${inventory-listing.chunk-size}")
+    private Integer chunkSize;
 
-    @PersistenceContext
-    private EntityManager entityManager;
+    @Value("${inventory-listing.max-page-size}")
+    private Integer maxPageSize;
 
-    @CachePut(value = "storage", key = "#productDuplicateDTO.id")
+    @Value("${storage-write.max-attempts}")
+    private Integer maxWriteAttempts;
+
+    @Transactional
     public void raiseProductQuantityById(ProductDuplicateDTO productDuplicateDTO, Integer quantityAdded) {
-        repository.raiseProductQuantityById(productDuplicateDTO.getId(), quantityAdded);
-        log.info("Product added: {} with quantity: {}", productDuplicateDTO.getName(), quantityAdded);
-        Map<String, String> productsWasOutMap = new HashMap<>();
-        for (Map.Entry<Long, String> entry : outMapWithId.entrySet()) {
-            if (entry.getKey().equals(productDuplicateDTO.getId())) {
-                productsWasOutMap.put(entry.getValue(), productDuplicateDTO.getName());
-            }
-        }
-        if (!productsWasOutMap.isEmpty()) {
-            customerClient.customerIdentify(productsWasOutMap);
-            log.info("Notified customers for products that were out of stock: {}", productsWasOutMap);
+        raiseProductQuantityById(productDuplicateDTO, quantityAdded, null);
+    }
+
+    @Transactional
+    public void raiseProductQuantityById(ProductDuplicateDTO productDuplicateDTO, Integer quantityAdded, Long warehouseId) {
+        stripedStockService.add(productDuplicateDTO.getId(), quantityAdded);
+        if (warehouseId != null) {
+            warehouseStockService.add(warehouseId, productDuplicateDTO.getId(), quantityAdded);
         }
+        inventoryLedgerService.record(productDuplicateDTO.getId(), quantityAdded, MovementType.RESTOCK, null);
+        stockCache.evict(productDuplicateDTO.getId());
+        eventPublisher.publishEvent(new StockChangedEvent(List.of(productDuplicateDTO.getId())));
+        log.info("Product added: {} with quantity: {}", productDuplicateDTO.getName(), quantityAdded);
+        stockSubscriptionService.notifyRestocked(productDuplicateDTO.getId(), productDuplicateDTO.getName());
     }
 
-    @CachePut(value = "storage", key = "#productDuplicateDTO.id")
     public void saveProduct(Integer quantity, ProductDuplicateDTO productDuplicateDTO) {
-        Storage storage = Storage.builder()
-                .productId(productDuplicateDTO.getId())
-                .quantity(quantity)
-                .build();
-        repository.save(storage);
+        overwriteQuantity(productDuplicateDTO.getId(), quantity);
         log.info("Product saved: {} with quantity: {}", productDuplicateDTO.getName(), quantity);
     }
 
-    @CachePut(value = "storage", key = "#productDuplicateDTO.id")
     public void updateProduct(Integer quantity, ProductDuplicateDTO productDuplicateDTO) {
-        Storage storage = Storage.builder()
-                .productId(productDuplicateDTO.getId())
-                .quantity(quantity)
-                .build();
-        repository.save(storage);
+        overwriteQuantity(productDuplicateDTO.getId(), quantity);
         log.info("Product updated: {} with new quantity: {}", productDuplicateDTO.getName(), quantity);
     }
 
     public List<ProductWithQuantityDTO> findAllStorageWithQuantity() {
-        List<Storage> allProducts = repository.findAll();
+        List<ProductWithQuantityDTO> productsWithQuantity = new ArrayList<>();
+        streamAllStorageWithQuantity(productsWithQuantity::addAll);
+        log.info("Retrieved all {} products with quantities", productsWithQuantity.size());
+        return productsWithQuantity;
+    }
+
+    public void streamAllStorageWithQuantity(Consumer<List<ProductWithQuantityDTO>> chunkConsumer) {
+        Long afterId = null;
+        do {
+            ProductWithQuantityPageDTO page = findPageStorageWithQuantity(afterId, chunkSize);
+            chunkConsumer.accept(page.getContent());
+            afterId = page.getNextAfterId();
+        } while (afterId != null);
+    }
+
+    public ProductWithQuantityPageDTO findPageStorageWithQuantity(Long afterId, Integer size) {
+        int pageSize = Math.max(1, Math.min(size, maxPageSize));
+        List<Storage> storagePage = repository.findAllByProductIdGreaterThanOrderByProductId(
+                afterId != null ? afterId : Long.MIN_VALUE, Limit.of(pageSize));
         List<StorageDuplicateDTO> storageList = new ArrayList<>();
-        for (Storage product : allProducts) {
-            StorageDuplicateDTO storageDuplicateDTO = StorageDuplicateDTO.builder()
+        for (Storage product : storagePage) {
+            storageList.add(StorageDuplicateDTO.builder()
                     .productId(product.getProductId())
-                    .quantity(product.getQuantity())
-                    .build();
-            storageList.add(storageDuplicateDTO);
+                    .quantity(product.availableQuantity())
+                    .build());
+        }
+
+        List<ProductWithQuantityDTO> content = new ArrayList<>();
+        if (!storageList.isEmpty()) {
+            content.addAll(productClient.getAllProductWithQuantity(storageList));
+            content.sort(Comparator.comparing(ProductWithQuantityDTO::getId));
         }
-        log.info("Retrieved all products with quantities: {}", storageList);
-        return productClient.getAllProductWithQuantity(storageList);
+        Long nextAfterId = storagePage.size() == pageSize ? storagePage.get(pageSize - 1).getProductId() : null;
+        log.info("Retrieved page of {} products with quantities after ID: {}", content.size(), afterId);
+        return ProductWithQuantityPageDTO.builder()
+                .content(content)
+                .nextAfterId(nextAfterId)
+                .build();
     }
 
-    @CacheEvict(value = "storage", key = "#id")
+    @Transactional
     public void deleteById(Long id) {
+        repository.findByIdForUpdate(id).ifPresent(storage -> inventoryLedgerService.record(id,
+                -(storage.getQuantity() + stripedStockService.drain(id)), MovementType.ADJUSTMENT, null));
         repository.deleteById(id);
+        warehouseStockService.deleteByProductId(id);
+        stockCache.evict(id);
+        eventPublisher.publishEvent(new StockChangedEvent(List.of(id)));
         log.info("Deleted product with ID: {}", id);
     }
 
     @Scheduled(cron = "0 0 7 * * ?")
     public void productVerification() {
-        List<Storage> allProducts = repository.findAll();
-        List<StorageDuplicateDTO> productsWithLack = new ArrayList<>();
-        for (Storage product : allProducts) {
-            if (product.getQuantity() <= 10) {
-                StorageDuplicateDTO storageDuplicateDTO = StorageDuplicateDTO.builder()
-                        .productId(product.getProductId())
-                        .quantity(product.getQuantity())
-                        .build();
-                productsWithLack.add(storageDuplicateDTO);
-            }
-        }
+        List<StorageDuplicateDTO> productsWithLack = lowStockService.findAllLowStock();
         kafkaProductVerification.send("product-name-identifier-topic", productsWithLack);
         log.info("Sent product verification message for low stock products: {}", productsWithLack);
     }
 
-    @Cacheable(value = "storage", key = "#id")
+    // the stock lookups fill the shared stock cache, so they read the primary in a read-write transaction: a value
+    // read from a lagging replica would be served for the whole time to live of the cache. A cache hit opens no
+    // connection at all
+    @Transactional
     public Storage findById(Long id) {
-        Storage storage = repository.findById(id).orElse(null);
+        Integer quantity = findQuantityById(id);
+        Storage storage = quantity == null ? null : Storage.builder()
+                .productId(id)
+                .quantity(quantity)
+                .build();
         log.info("Finding product by ID: {}: {}", id, storage);
         return storage;
     }
 
-    @Cacheable(value = "is-in-storage", key = "#id")
+    @Transactional
     public Boolean isInStorage(Long id, Integer requiredQuantity) {
-        Storage product = repository.findById(id).orElse(null);
-        boolean inStorage = product != null && product.getQuantity() >= requiredQuantity;
+        Integer quantity = findQuantityById(id);
+        boolean inStorage = quantity != null && quantity >= requiredQuantity;
         log.info("Checking storage for product ID: {} with required quantity {}: {}", id, requiredQuantity, inStorage);
         return inStorage;
     }
 
-    @KafkaListener(topics = "order-topic", groupId = "${spring.kafka.consumer-groups.order-group.group-id}")
-    @CacheEvict(value = "storage", key = "#orderDuplicateDTO.id")
+    // the version check replaces the row lock: when the row changed after it was read, the transaction is
+    // rolled back and the write is retried on a fresh read, up to storage-write.max-attempts times;
+    // the existing low stock threshold is kept, and a striped product gets the quantity spread over its stripes
+    private void overwriteQuantity(Long id, Integer quantity) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.execute(status -> {
+                    writeQuantity(id, quantity);
+                    return null;
+                });
+                break;
+            } catch (OptimisticLockingFailureException e) {
+                meterRegistry.counter("storage.write.conflicts").increment();
+                if (attempt >= maxWriteAttempts) {
+                    meterRegistry.counter("storage.write.exhausted").increment();
+                    log.warn("Gave up writing quantity of product ID: {} after {} conflicts", id, attempt);
+                    throw e;
+                }
+                log.info("Retrying write of quantity of product ID: {} after conflict {}", id, attempt);
+            }
+        }
+        // evicted rather than written through: an order committed since this write may already have evicted
+        // the product, and putting the quantity written here would bring back the older one
+        stockCache.evict(id);
+        eventPublisher.publishEvent(new StockChangedEvent(List.of(id)));
+    }
+
+    private void writeQuantity(Long id, Integer quantity) {
+        Storage storage = repository.findById(id)
+                .orElseGet(() -> Storage.builder().productId(id).quantity(0).build());
+        Integer striped = stripedStockService.spread(id, quantity);
+        int oldQuantity = storage.getQuantity() + (striped != null ? striped : 0);
+        inventoryLedgerService.record(id, quantity - oldQuantity, MovementType.ADJUSTMENT, null);
+        storage.setQuantity(striped != null ? 0 : quantity);
+        // flushed, so the warehouse stock is fitted to the new total
+        repository.saveAndFlush(storage);
+        warehouseStockService.fit(List.of(id));
+    }
+
+    // quantities are read from the cache, and the missed products with one query on the primary
+    @Transactional
+    public Map<Long, Integer> findAllQuantityById(Collection<Long> listProductId) {
+        Map<Long, Integer> stock = new HashMap<>();
+        List<Long> listMissedId = new ArrayList<>();
+        for (Long productId : listProductId) {
+            Integer quantity = stockCache.get(productId);
+            if (quantity == null) {
+                listMissedId.add(productId);
+            } else {
+                stock.put(productId, quantity);
+            }
+        }
+        if (!listMissedId.isEmpty()) {
+            for (Storage storage : repository.findAllById(listMissedId)) {
+                stock.put(storage.getProductId(), storage.availableQuantity());
+                stockCache.load(storage.getProductId(), storage.availableQuantity());
+            }
+        }
+        return stock;
+    }
+
+    private Integer findQuantityById(Long id) {
+        Integer quantity = stockCache.get(id);
+        if (quantity == null) {
+            Storage storage = repository.findById(id).orElse(null);
+            if (storage != null) {
+                quantity = storage.availableQuantity();
+                stockCache.load(id, quantity);
+            }
+        }
+        return quantity;
+    }
+
+    @Transactional
     public void reduceQuantityById(OrderWithProductCartDTO orderDuplicateDTO) {
-        for (Map.Entry<ProductDuplicateDTO, Integer> entry : orderDuplicateDTO.getCart().entrySet()) {
-            entityManager.createNativeQuery("UPDATE storage " +
-                            "SET quantity = quantity - :deletedQuantity " +
-                            "WHERE id = :id")
-                    .setParameter("deletedQuantity", entry.getValue())
-                    .setParameter("id", entry.getKey().getId())
-                    .executeUpdate();
-            entityManager.flush();
-            entityManager.clear();
-            log.info("Updated storage for product ID: {} by subtracting quantity: {}", entry.getKey().getId(), entry.getValue());
-        }
-    }
-
-    public Boolean isOrderInStorage(Map<ProductDuplicateDTO, Integer> cart) {
-        for (Map.Entry<ProductDuplicateDTO, Integer> entry : cart.entrySet()) {
-            if (!this.isInStorage(entry.getKey().getId(), entry.getValue())) {
-                log.warn("Product ID: {} is not in storage for quantity: {}", entry.getKey().getId(), entry.getValue());
-                return false;
+        reduceQuantity(List.of(orderDuplicateDTO));
+    }
+
+    @KafkaListener(topics = "order-topic", groupId = "${spring.kafka.consumer-groups.order-group.group-id}")
+    @Transactional
+    public void reduceQuantity(List<OrderWithProductCartDTO> receivedOrders) {
+        // records that could not be deserialized arrive as null and are skipped, so they do not stall the batch
+        List<OrderWithProductCartDTO> readOrders = new ArrayList<>();
+        List<String> listReceivedOrderId = new ArrayList<>();
+        for (OrderWithProductCartDTO order : receivedOrders) {
+            if (order == null) {
+                continue;
+            }
+            readOrders.add(order);
+            if (order.getId() != null) {
+                listReceivedOrderId.add(order.getId());
+            }
+        }
+        if (readOrders.size() < receivedOrders.size()) {
+            log.warn("Skipped {} unreadable order records", receivedOrders.size() - readOrders.size());
+        }
+        Set<String> newOrderId = processedOrderService.markProcessed(listReceivedOrderId);
+        List<OrderWithProductCartDTO> orders = new ArrayList<>();
+        List<String> listOrderId = new ArrayList<>();
+        for (OrderWithProductCartDTO order : readOrders) {
+            if (order.getId() == null) {
+                orders.add(order);
+            } else if (newOrderId.remove(order.getId())) {
+                orders.add(order);
+                listOrderId.add(order.getId());
             }
         }
-        log.info("All products are in storage for the order.");
-        return true;
+        if (orders.isEmpty()) {
+            return;
+        }
+
+        // what was reserved is decided by the holds this statement removes: a hold that expired and was released
+        // after the order was placed has returned its stock, so that part of the order is decremented like any other
+        Map<String, Map<Long, Integer>> heldByOrderId = new HashMap<>();
+        if (!listOrderId.isEmpty()) {
+            jdbcTemplate.query("DELETE FROM reservation " +
+                    "WHERE order_id IN (" + String.join(", ", Collections.nCopies(listOrderId.size(), "?")) + ") " +
+                    "RETURNING order_id, product_id, quantity",
+                    rs -> {
+                        heldByOrderId.computeIfAbsent(rs.getString(1), orderId -> new HashMap<>())
+                                .merge(rs.getLong(2), rs.getInt(3), Integer::sum);
+                    }, listOrderId.toArray());
+        }
+        if (!heldByOrderId.isEmpty()) {
+            log.info("Committed reservations for order IDs: {}", heldByOrderId.keySet());
+        }
+
+        Map<Long, Integer> deletedQuantity = new HashMap<>();
+        List<InventoryMovement> movements = new ArrayList<>();
+        for (OrderWithProductCartDTO order : orders) {
+            Map<Long, Integer> held = heldByOrderId.getOrDefault(order.getId(), new HashMap<>());
+            for (CartItemDTO line : order.getCart()) {
+                int reserved = Math.min(held.getOrDefault(line.getProductId(), 0), line.getQuantity());
+                held.merge(line.getProductId(), -reserved, Integer::sum);
+                int quantity = line.getQuantity() - reserved;
+                if (quantity > 0) {
+                    deletedQuantity.merge(line.getProductId(), quantity, Integer::sum);
+                    movements.add(InventoryMovement.builder()
+                            .productId(line.getProductId())
+                            .quantityChange(-quantity)
+                            .type(MovementType.ORDER)
+                            .reference(order.getId())
+                            .build());
+                }
+            }
+        }
+        if (deletedQuantity.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batchArgs = new ArrayList<>();
+        for (Map.Entry<Long, Integer> entry : deletedQuantity.entrySet()) {
+            if (stripedStockService.isStriped(entry.getKey())) {
+                stripedStockService.subtract(entry.getKey(), entry.getValue());
+            } else {
+                batchArgs.add(new Object[]{entry.getValue(), entry.getKey()});
+            }
+        }
+        if (!batchArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE storage " +
+                    "SET quantity = quantity - ?, version = version + 1 " +
+                    "WHERE product_id = ?", batchArgs);
+        }
+        warehouseStockService.fit(deletedQuantity.keySet());
+        inventoryLedgerService.recordAll(movements);
+        stockCache.evictAll(deletedQuantity.keySet());
+        eventPublisher.publishEvent(new StockChangedEvent(new ArrayList<>(deletedQuantity.keySet())));
+        log.info("Updated storage for {} orders by subtracting quantities: {}", orders.size(), deletedQuantity);
     }
 
-    public Map<ProductDuplicateDTO, Integer> findOutOfStorageProduct(
-            Map<ProductDuplicateDTO, Integer> cart, String customerId) {
-        Map<ProductDuplicateDTO, Integer> outOfStorageProduct = new HashMap<>();
-        for (Map.Entry<ProductDuplicateDTO, Integer> entry : cart.entrySet()) {
-            if (!isInStorage(entry.getKey().getId(), entry.getValue())) {
-                outOfStorageProduct.put(entry.getKey(), entry.getValue());
-                outMapWithId.put(entry.getKey().getId(), customerId);
-                log.warn("Product ID: {} is out of stock, added to outMap for customer ID: {}", entry.getKey().getId(), customerId);
+    @Transactional
+    public InventoryStatusDTO checkOrder(List<CartItemDTO> cart, String customerId) {
+        List<Long> listProductId = new ArrayList<>();
+        for (CartItemDTO line : cart) {
+            listProductId.add(line.getProductId());
+        }
+        Map<Long, Integer> stock = findAllQuantityById(listProductId);
+
+        List<CartItemDTO> outOfStorageProduct = new ArrayList<>();
+        List<Long> listOutOfStorageId = new ArrayList<>();
+        for (CartItemDTO line : cart) {
+            Integer quantity = stock.get(line.getProductId());
+            if (quantity == null || quantity < line.getQuantity()) {
+                outOfStorageProduct.add(line);
+                listOutOfStorageId.add(line.getProductId());
             }
         }
-        return outOfStorageProduct;
+        if (!outOfStorageProduct.isEmpty()) {
+            stockSubscriptionService.subscribe(customerId, listOutOfStorageId);
+            log.warn("Product IDs: {} are out of stock for customer ID: {}", listOutOfStorageId, customerId);
+        }
+
+        InventoryStatusDTO inventoryStatusDTO = InventoryStatusDTO.builder()
+                .isOrderInStorage(outOfStorageProduct.isEmpty())
+                .outOfStorageProducts(outOfStorageProduct)
+                .build();
+        log.info("Checked order of {} products in storage: {}", cart.size(), inventoryStatusDTO);
+        return inventoryStatusDTO;
     }
 }
@@ -0,0 +1,192 @@
+package com.shop.storageservice.service;
+
+import com.shop.storageservice.model.Storage;
+import com.shop.storageservice.repository.StorageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Spreads the stock of hot products over several {@code storage_stripe} rows, so concurrent restocks and
+ * decrements of one product update different rows instead of queueing on its storage row. The stock of a
+ * product is always {@code storage.quantity} plus its stripes, so a replica that does not know yet that a
+ * product is striped still updates it correctly, only on the storage row.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StripedStockService {
+
+    private final StorageRepository repository;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<Long, Integer> stripeCountById = new ConcurrentHashMap<>();
+
+    @Value("${hot-stock.max-stripes}")
+    private Integer maxStripes;
+
+    public boolean isStriped(Long productId) {
+        return stripeCountById.containsKey(productId);
+    }
+
+    @Transactional
+    public void enable(Long productId, Integer stripes) {
+        Storage storage = repository.findByIdForUpdate(productId).orElse(null);
+        if (storage == null) {
+            log.warn("Product ID: {} is not in storage, striping skipped", productId);
+            return;
+        }
+        int stripeCount = Math.max(1, Math.min(stripes, maxStripes));
+        insertStripes(productId, stripeCount, storage.getQuantity() + sum(deleteStripes(productId)));
+        storage.setQuantity(0);
+        repository.save(storage);
+        log.info("Spread stock of product ID: {} over {} stripes", productId, stripeCount);
+    }
+
+    @Transactional
+    public void disable(Long productId) {
+        repository.findByIdForUpdate(productId).ifPresent(storage -> {
+            storage.setQuantity(storage.getQuantity() + drain(productId));
+            repository.save(storage);
+        });
+        log.info("Folded stripes of product ID: {} back into its storage row", productId);
+    }
+
+    public void add(Long productId, Integer quantity) {
+        Integer stripeCount = stripeCountById.get(productId);
+        if (stripeCount == null || jdbcTemplate.update("UPDATE storage_stripe " +
+                "SET quantity = quantity + ? " +
+                "WHERE product_id = ? AND stripe = ?",
+                quantity, productId, ThreadLocalRandom.current().nextInt(stripeCount)) == 0) {
+            repository.raiseProductQuantityById(productId, quantity);
+        }
+    }
+
+    // a random stripe is tried first and the others in turn, then the storage row; only when no single
+    // row holds the quantity are all rows of the product locked and the quantity gathered from them
+    public boolean take(Long productId, Integer quantity) {
+        Integer stripeCount = stripeCountById.get(productId);
+        if (stripeCount != null) {
+            int first = ThreadLocalRandom.current().nextInt(stripeCount);
+            for (int i = 0; i < stripeCount; i++) {
+                if (jdbcTemplate.update("UPDATE storage_stripe " +
+                        "SET quantity = quantity - ? " +
+                        "WHERE product_id = ? AND stripe = ? AND quantity >= ?",
+                        quantity, productId, (first + i) % stripeCount, quantity) > 0) {
+                    return true;
+                }
+            }
+        }
+        return repository.reserveProductQuantityById(productId, quantity) > 0 || gather(productId, quantity);
+    }
+
+    public void subtract(Long productId, Integer quantity) {
+        if (!take(productId, quantity)) {
+            // orders are applied even when they overdraw the stock, as for products that are not striped
+            repository.raiseProductQuantityById(productId, -quantity);
+        }
+    }
+
+    // replaces the stripes of a striped product with an even split of the quantity and returns the stock
+    // they held, or null when the product is not striped; the caller holds the storage row lock
+    public Integer spread(Long productId, Integer quantity) {
+        List<Integer> stripes = deleteStripes(productId);
+        if (stripes.isEmpty()) {
+            return null;
+        }
+        insertStripes(productId, stripes.size(), quantity);
+        return sum(stripes);
+    }
+
+    // deletes the stripes of the product and returns the stock they held; the caller holds the storage row lock
+    public int drain(Long productId) {
+        stripeCountById.remove(productId);
+        return sum(deleteStripes(productId));
+    }
+
+    @Scheduled(fixedDelayString = "${hot-stock.refresh-delay}")
+    public void refresh() {
+        Map<Long, Integer> stripeCounts = new HashMap<>();
+        jdbcTemplate.query("SELECT product_id, COUNT(*) FROM storage_stripe GROUP BY product_id",
+                rs -> {
+                    stripeCounts.put(rs.getLong(1), rs.getInt(2));
+                });
+        stripeCountById.keySet().retainAll(stripeCounts.keySet());
+        stripeCountById.putAll(stripeCounts);
+    }
+
+    private boolean gather(Long productId, Integer quantity) {
+        Integer striped = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(quantity), 0) FROM storage_stripe " +
+                "WHERE product_id = ?", Integer.class, productId);
+        if (striped == null || striped == 0) {
+            return false;
+        }
+
+        // the storage row is locked before the stripes, in the same order as enabling and overwriting
+        Storage storage = repository.findByIdForUpdate(productId).orElse(null);
+        if (storage == null) {
+            return false;
+        }
+        Map<Integer, Integer> stripes = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT stripe, quantity FROM storage_stripe " +
+                        "WHERE product_id = ? AND quantity > 0 " +
+                        "ORDER BY stripe FOR UPDATE",
+                rs -> {
+                    stripes.put(rs.getInt(1), rs.getInt(2));
+                }, productId);
+        int available = Math.max(storage.getQuantity(), 0) + sum(stripes.values());
+        if (available < quantity) {
+            return false;
+        }
+
+        int remaining = quantity;
+        List<Object[]> batchArgs = new ArrayList<>();
+        for (Map.Entry<Integer, Integer> stripe : stripes.entrySet()) {
+            int taken = Math.min(stripe.getValue(), remaining);
+            if (taken > 0) {
+                batchArgs.add(new Object[]{taken, productId, stripe.getKey()});
+                remaining -= taken;
+            }
+        }
+        jdbcTemplate.batchUpdate("UPDATE storage_stripe " +
+                "SET quantity = quantity - ? " +
+                "WHERE product_id = ? AND stripe = ?", batchArgs);
+        if (remaining > 0) {
+            storage.setQuantity(storage.getQuantity() - remaining);
+            repository.save(storage);
+        }
+        log.info("Gathered quantity: {} of product ID: {} from {} stripes", quantity, productId, batchArgs.size());
+        return true;
+    }
+
+    private List<Integer> deleteStripes(Long productId) {
+        return jdbcTemplate.queryForList("DELETE FROM storage_stripe WHERE product_id = ? RETURNING quantity",
+                Integer.class, productId);
+    }
+
+    private void insertStripes(Long productId, int stripeCount, int quantity) {
+        List<Object[]> batchArgs = new ArrayList<>();
+        for (int stripe = 0; stripe < stripeCount; stripe++) {
+            int share = Math.floorDiv(quantity, stripeCount) + (stripe < Math.floorMod(quantity, stripeCount) ? 1 : 0);
+            batchArgs.add(new Object[]{productId, stripe, share});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO storage_stripe (product_id, stripe, quantity) VALUES (?, ?, ?)", batchArgs);
+        stripeCountById.put(productId, stripeCount);
+    }
+
+    private int sum(Collection<Integer> quantities) {
+        int sum = 0;
+        for (Integer quantity : quantities) {
+            sum += quantity;
+        }
+        return sum;
+    }
+}
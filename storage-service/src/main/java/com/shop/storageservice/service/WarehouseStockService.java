@@ -0,0 +1,210 @@
+package com.shop.storageservice.service;
+
+import com.shop.storageservice.dto.AllocationLineDTO;
+import com.shop.storageservice.model.Warehouse;
+import com.shop.storageservice.repository.WarehouseRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stock of each product per warehouse. {@code storage.quantity} stays the total of a product, which reservations
+ * check and take atomically; warehouse stock only says where that total is, and the part of it that is in no
+ * warehouse is unassigned. All warehouse stock is copied into memory for allocation when the application starts.
+ * After that, only the products whose warehouse stock changed are reloaded, once the change is committed. The
+ * changed product IDs are broadcast on a Redis pub/sub channel as {@code instanceId|productId,...}, and the
+ * other instances reload those products too. A message without product IDs means the warehouses changed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WarehouseStockService {
+
+    public static final String CHANGE_CHANNEL = "warehouse-stock-change";
+
+    private static final String SEPARATOR = "|";
+
+    private final WarehouseRepository warehouseRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final StringRedisTemplate redisTemplate;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    private volatile List<Warehouse> warehouses = List.of();
+    // product id -> warehouse id -> quantity
+    private final Map<Long, Map<Long, Integer>> stockByProductId = new ConcurrentHashMap<>();
+
+    public Warehouse saveWarehouse(Warehouse warehouse) {
+        Warehouse saved = warehouseRepository.save(warehouse);
+        warehouses = warehouseRepository.findAll();
+        redisTemplate.convertAndSend(CHANGE_CHANNEL, instanceId + SEPARATOR);
+        log.info("Warehouse saved: {}", saved);
+        return saved;
+    }
+
+    public List<Warehouse> findAllWarehouse() {
+        return warehouses;
+    }
+
+    public Map<Long, Integer> findStockByWarehouseId(Long productId) {
+        return stockByProductId.getOrDefault(productId, Map.of());
+    }
+
+    public void add(Long warehouseId, Long productId, Integer quantity) {
+        jdbcTemplate.update("INSERT INTO warehouse_stock (warehouse_id, product_id, quantity) " +
+                "VALUES (?, ?, ?) " +
+                "ON CONFLICT (warehouse_id, product_id) DO UPDATE SET quantity = warehouse_stock.quantity + EXCLUDED.quantity",
+                warehouseId, productId, quantity);
+        changed(List.of(productId));
+        log.info("Added quantity: {} of product ID: {} to warehouse ID: {}", quantity, productId, warehouseId);
+    }
+
+    public void deleteByProductId(Long productId) {
+        jdbcTemplate.update("DELETE FROM warehouse_stock WHERE product_id = ?", productId);
+        changed(List.of(productId));
+    }
+
+    // a planned line whose warehouse no longer holds it (the copy in memory was behind) is taken from
+    // unassigned stock instead; the total was already taken from storage, so the lines only move location
+    public List<AllocationLineDTO> take(List<AllocationLineDTO> lines) {
+        List<AllocationLineDTO> taken = new ArrayList<>();
+        Set<Long> listChangedId = new HashSet<>();
+        for (AllocationLineDTO line : lines) {
+            if (line.getWarehouseId() != null && jdbcTemplate.update("UPDATE warehouse_stock " +
+                    "SET quantity = quantity - ? " +
+                    "WHERE warehouse_id = ? AND product_id = ? AND quantity >= ?",
+                    line.getQuantity(), line.getWarehouseId(), line.getProductId(), line.getQuantity()) > 0) {
+                listChangedId.add(line.getProductId());
+                taken.add(line);
+            } else {
+                taken.add(AllocationLineDTO.builder()
+                        .productId(line.getProductId())
+                        .quantity(line.getQuantity())
+                        .build());
+            }
+        }
+        if (!listChangedId.isEmpty()) {
+            changed(listChangedId);
+        }
+        return taken;
+    }
+
+    // the totals of these products were reduced without saying which warehouse the stock left, as by orders
+    // without a reservation and by overwritten quantities. The reduction is taken from unassigned stock first,
+    // and what the warehouses hold over the total is then taken from the warehouses of lowest priority
+    public void fit(Collection<Long> listProductId) {
+        if (listProductId.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> excessById = new HashMap<>();
+        List<Object[]> batchArgs = new ArrayList<>();
+        Set<Long> listFittedId = new HashSet<>();
+        jdbcTemplate.query("SELECT ws.product_id, ws.warehouse_id, ws.quantity, " +
+                "SUM(ws.quantity) OVER (PARTITION BY ws.product_id) - COALESCE(s.quantity, 0) " +
+                "- COALESCE((SELECT SUM(ss.quantity) FROM storage_stripe ss WHERE ss.product_id = ws.product_id), 0) " +
+                "FROM warehouse_stock ws " +
+                "JOIN warehouse w ON w.id = ws.warehouse_id " +
+                "LEFT JOIN storage s ON s.product_id = ws.product_id " +
+                "WHERE ws.product_id IN (" + String.join(", ", Collections.nCopies(listProductId.size(), "?")) + ") " +
+                "AND ws.quantity > 0 " +
+                "ORDER BY ws.product_id, w.priority DESC NULLS FIRST, ws.warehouse_id",
+                rs -> {
+                    long productId = rs.getLong(1);
+                    Integer excess = excessById.get(productId);
+                    if (excess == null) {
+                        excess = rs.getInt(4);
+                    }
+                    int trimmed = Math.max(0, Math.min(excess, rs.getInt(3)));
+                    if (trimmed > 0) {
+                        batchArgs.add(new Object[]{trimmed, rs.getLong(2), productId});
+                        listFittedId.add(productId);
+                    }
+                    excessById.put(productId, excess - trimmed);
+                }, listProductId.toArray());
+        if (!batchArgs.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE warehouse_stock " +
+                    "SET quantity = quantity - ? " +
+                    "WHERE warehouse_id = ? AND product_id = ?", batchArgs);
+            changed(listFittedId);
+            log.info("Fitted warehouse stock of product IDs: {} to their totals", listFittedId);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        warehouses = warehouseRepository.findAll();
+        Map<Long, Map<Long, Integer>> loaded = new HashMap<>();
+        jdbcTemplate.query("SELECT warehouse_id, product_id, quantity FROM warehouse_stock WHERE quantity > 0",
+                rs -> {
+                    loaded.computeIfAbsent(rs.getLong(2), id -> new ConcurrentHashMap<>()).put(rs.getLong(1), rs.getInt(3));
+                });
+        stockByProductId.keySet().retainAll(loaded.keySet());
+        stockByProductId.putAll(loaded);
+        log.info("Loaded stock of {} products in {} warehouses", loaded.size(), warehouses.size());
+    }
+
+    public void onChange(String message) {
+        String[] parts = message.split("\\" + SEPARATOR, 2);
+        if (parts.length < 2 || instanceId.equals(parts[0])) {
+            return;
+        }
+        if (parts[1].isEmpty()) {
+            warehouses = warehouseRepository.findAll();
+            log.info("Warehouses reloaded after a change by another instance");
+            return;
+        }
+        List<Long> listProductId = new ArrayList<>();
+        for (String productId : parts[1].split(",")) {
+            listProductId.add(Long.valueOf(productId));
+        }
+        reload(listProductId);
+    }
+
+    private void reload(Collection<Long> listProductId) {
+        Map<Long, Map<Long, Integer>> loaded = new HashMap<>();
+        jdbcTemplate.query("SELECT warehouse_id, product_id, quantity FROM warehouse_stock " +
+                "WHERE product_id IN (" + String.join(", ", Collections.nCopies(listProductId.size(), "?")) + ") " +
+                "AND quantity > 0",
+                rs -> {
+                    loaded.computeIfAbsent(rs.getLong(2), id -> new ConcurrentHashMap<>()).put(rs.getLong(1), rs.getInt(3));
+                }, listProductId.toArray());
+        for (Long productId : listProductId) {
+            Map<Long, Integer> stock = loaded.get(productId);
+            if (stock == null) {
+                stockByProductId.remove(productId);
+            } else {
+                stockByProductId.put(productId, stock);
+            }
+        }
+    }
+
+    // the copy is only used to plan allocations, so it is reloaded from what was committed; a change that is
+    // rolled back leaves it as it was
+    private void changed(Collection<Long> listProductId) {
+        Runnable action = () -> {
+            reload(listProductId);
+            StringJoiner message = new StringJoiner(",", instanceId + SEPARATOR, "");
+            listProductId.forEach(productId -> message.add(String.valueOf(productId)));
+            redisTemplate.convertAndSend(CHANGE_CHANNEL, message.toString());
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
@@ -0,0 +1,93 @@
+package com.shop.storageservice.cache;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class TwoLevelCacheManagerTest {
+
+    private static final String CHANNEL = "invalidation";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    private ConcurrentMapCacheManager remoteCacheManager;
+    private TwoLevelCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        remoteCacheManager = new ConcurrentMapCacheManager("stock");
+        cacheManager = new TwoLevelCacheManager(remoteCacheManager, "maximumSize=100", redisTemplate, CHANNEL);
+        cacheManager.afterPropertiesSet();
+    }
+
+    @Test
+    void getCache() {
+//        when
+        Cache cache = cacheManager.getCache("stock");
+
+//        then
+        assertInstanceOf(TwoLevelCache.class, cache);
+        assertEquals("stock", cache.getName());
+    }
+
+    @Test
+    void onInvalidationFromAnotherInstance() {
+//        given
+        Cache cache = cacheManager.getCache("stock");
+        cache.put(1L, 10);
+        remoteCacheManager.getCache("stock").put(1L, 7);
+
+//        when
+        cacheManager.onInvalidation("other-instance|stock|1");
+
+//        then
+        assertEquals(7, cache.get(1L, Integer.class));
+    }
+
+    @Test
+    void onInvalidationFromItselfIsIgnored() {
+//        given
+        Cache cache = cacheManager.getCache("stock");
+        cache.put(1L, 10);
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(CHANNEL), message.capture());
+        remoteCacheManager.getCache("stock").put(1L, 7);
+
+//        when
+        cacheManager.onInvalidation(message.getValue());
+
+//        then
+        assertEquals(10, cache.get(1L, Integer.class));
+    }
+
+    @Test
+    void onClearFromAnotherInstance() {
+//        given
+        Cache cache = cacheManager.getCache("stock");
+        cache.put(1L, 10);
+        cache.put(2L, 20);
+        remoteCacheManager.getCache("stock").put(1L, 7);
+
+//        when
+        cacheManager.onInvalidation("other-instance|stock");
+
+//        then
+        assertEquals(7, cache.get(1L, Integer.class));
+        verify(redisTemplate, times(2)).convertAndSend(eq(CHANNEL), anyString());
+    }
+}
@@ -0,0 +1,140 @@
+package com.shop.storageservice.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TwoLevelCacheTest {
+
+    @Mock
+    private CacheInvalidationPublisher invalidationPublisher;
+
+    private ConcurrentMapCache remoteCache;
+    private TwoLevelCache cache;
+
+    @BeforeEach
+    void setUp() {
+        remoteCache = new ConcurrentMapCache("stock");
+        cache = new TwoLevelCache("stock", Caffeine.newBuilder().recordStats().build(), remoteCache, invalidationPublisher);
+    }
+
+    @Test
+    void getFromRemoteThenLocal() {
+//        given
+        remoteCache.put(1L, 10);
+
+//        when
+        Integer first = cache.get(1L, Integer.class);
+        remoteCache.evict(1L);
+        Integer second = cache.get(1L, Integer.class);
+
+//        then
+        assertEquals(10, first);
+        assertEquals(10, second);
+        assertEquals(1, cache.getRemoteHitCount());
+        assertEquals(1, cache.getLocalHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    void getMiss() {
+//        when
+        Integer value = cache.get(1L, Integer.class);
+
+//        then
+        assertNull(value);
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void putWritesBothTiersAndPublishes() {
+//        when
+        cache.put(1L, 10);
+
+//        then
+        assertEquals(10, remoteCache.get(1L, Integer.class));
+        assertEquals(10, cache.get(1L, Integer.class));
+        assertEquals(1, cache.getLocalHitCount());
+        verify(invalidationPublisher).publishEvict("stock", "1");
+    }
+
+    @Test
+    void putIfAbsentWritesBothTiersWithoutPublishing() {
+//        when
+        cache.putIfAbsent(1L, 10);
+
+//        then
+        assertEquals(10, remoteCache.get(1L, Integer.class));
+        assertEquals(10, cache.get(1L, Integer.class));
+        assertEquals(1, cache.getLocalHitCount());
+        assertEquals(1, cache.getPutCount());
+        verifyNoInteractions(invalidationPublisher);
+    }
+
+    @Test
+    void putIfAbsentKeepsRemoteValue() {
+//        given
+        remoteCache.put(1L, 7);
+
+//        when
+        Cache.ValueWrapper existing = cache.putIfAbsent(1L, 10);
+
+//        then
+        assertEquals(7, existing.get());
+        assertEquals(7, remoteCache.get(1L, Integer.class));
+        assertEquals(7, cache.get(1L, Integer.class));
+        assertEquals(1, cache.getLocalHitCount());
+        assertEquals(0, cache.getPutCount());
+        verifyNoInteractions(invalidationPublisher);
+    }
+
+    @Test
+    void evictRemovesBothTiersAndPublishes() {
+//        given
+        cache.put(1L, 10);
+
+//        when
+        cache.evict(1L);
+
+//        then
+        assertNull(remoteCache.get(1L));
+        assertNull(cache.get(1L));
+        verify(invalidationPublisher, times(2)).publishEvict("stock", "1");
+    }
+
+    @Test
+    void evictLocalKeepsRemote() {
+//        given
+        cache.put(1L, 10);
+        remoteCache.put(1L, 7);
+
+//        when
+        cache.evictLocal("1");
+
+//        then
+        assertEquals(7, cache.get(1L, Integer.class));
+    }
+
+    @Test
+    void clear() {
+//        given
+        cache.put(1L, 10);
+
+//        when
+        cache.clear();
+
+//        then
+        assertNull(cache.get(1L));
+        verify(invalidationPublisher).publishClear("stock");
+    }
+}
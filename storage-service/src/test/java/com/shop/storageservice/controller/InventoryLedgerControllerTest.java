@@ -0,0 +1,90 @@
+package com.shop.storageservice.controller;
+
+import com.shop.storageservice.enums.MovementType;
+import com.shop.storageservice.model.InventoryMovement;
+import com.shop.storageservice.service.InventoryLedgerService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+@WebMvcTest(InventoryLedgerController.class)
+class InventoryLedgerControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private InventoryLedgerService inventoryLedgerService;
+
+    @Test
+    void testFindQuantityAt() throws Exception {
+//        given
+        LocalDateTime at = LocalDateTime.of(2024, 5, 1, 12, 0);
+        when(inventoryLedgerService.findQuantityAt(1L, at)).thenReturn(15);
+
+//        when
+        mockMvc.perform(get("/api/v1/storage/ledger/quantity/1")
+                        .param("at", "2024-05-01T12:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("15"));
+
+//        then
+        verify(inventoryLedgerService, times(1)).findQuantityAt(1L, at);
+    }
+
+    @Test
+    void testFindCurrentQuantity() throws Exception {
+//        given
+        when(inventoryLedgerService.findQuantityAt(eq(1L), any(LocalDateTime.class))).thenReturn(7);
+
+//        when
+        mockMvc.perform(get("/api/v1/storage/ledger/quantity/1"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("7"));
+
+//        then
+        verify(inventoryLedgerService, times(1)).findQuantityAt(eq(1L), any(LocalDateTime.class));
+    }
+
+    @Test
+    void testFindMovements() throws Exception {
+//        given
+        LocalDateTime from = LocalDateTime.of(2024, 5, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.of(2024, 5, 2, 0, 0);
+        InventoryMovement movement = InventoryMovement.builder()
+                .id(1L)
+                .productId(1L)
+                .quantityChange(-2)
+                .type(MovementType.ORDER)
+                .reference("order1")
+                .build();
+        when(inventoryLedgerService.findMovements(1L, from, to)).thenReturn(List.of(movement));
+
+//        when
+        mockMvc.perform(get("/api/v1/storage/ledger/movements/1")
+                        .param("from", "2024-05-01T00:00:00")
+                        .param("to", "2024-05-02T00:00:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].type").value("ORDER"))
+                .andExpect(jsonPath("$[0].quantityChange").value(-2));
+
+//        then
+        verify(inventoryLedgerService, times(1)).findMovements(1L, from, to);
+    }
+}
@@ -0,0 +1,94 @@
+package com.shop.storageservice.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.storageservice.dto.InventoryStatusDTO;
+import com.shop.storageservice.dto.OrderWithProductCartDTO;
+import com.shop.storageservice.service.ReservationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+@WebMvcTest(ReservationController.class)
+class ReservationControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private ReservationService reservationService;
+
+    private OrderWithProductCartDTO orderWithProductCartDTO;
+
+    @BeforeEach
+    void setUp() {
+        orderWithProductCartDTO = OrderWithProductCartDTO.builder()
+                .id("order1")
+                .customerId("customer1")
+                .cost(BigDecimal.valueOf(100))
+                .build();
+    }
+
+    @Test
+    void testReserve() throws Exception {
+//        given
+        InventoryStatusDTO expectedResponse = InventoryStatusDTO.builder()
+                .isOrderInStorage(true)
+                .outOfStorageProducts(List.of())
+                .build();
+        when(reservationService.reserve(any())).thenReturn(expectedResponse);
+
+//        when
+        mockMvc.perform(post("/api/v1/storage/reservation/reserve")
+                        .contentType(MediaType.APPLICATION_JSON_VALUE)
+                        .content(new ObjectMapper().writeValueAsString(orderWithProductCartDTO)))
+                .andExpect(status().isOk())
+                .andExpect(content().json(new ObjectMapper().writeValueAsString(expectedResponse)));
+
+//        then
+        verify(reservationService, times(1)).reserve(orderWithProductCartDTO);
+    }
+
+    @Test
+    void testCommit() throws Exception {
+//        given
+        doNothing().when(reservationService).commit(anyString());
+
+//        when
+        mockMvc.perform(put("/api/v1/storage/reservation/commit/order1"))
+                .andExpect(status().isOk());
+
+//        then
+        verify(reservationService, times(1)).commit("order1");
+    }
+
+    @Test
+    void testRelease() throws Exception {
+//        given
+        doNothing().when(reservationService).release(anyString());
+
+//        when
+        mockMvc.perform(put("/api/v1/storage/reservation/release/order1"))
+                .andExpect(status().isOk());
+
+//        then
+        verify(reservationService, times(1)).release("order1");
+    }
+}
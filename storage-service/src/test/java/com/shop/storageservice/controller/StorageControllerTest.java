@@ -1,12 +1,20 @@
 package com.shop.storageservice.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.storageservice.dto.BulkRestockResultDTO;
 import com.shop.storageservice.dto.CartDTO;
+import com.shop.storageservice.dto.CartItemDTO;
+import com.shop.storageservice.dto.InventoryStatusDTO;
 import com.shop.storageservice.dto.OrderWithProductCartDTO;
 import com.shop.storageservice.dto.ProductDuplicateDTO;
 import com.shop.storageservice.dto.ProductWithQuantityDTO;
+import com.shop.storageservice.dto.ProductWithQuantityPageDTO;
+import com.shop.storageservice.enums.StockFileFormat;
 import com.shop.storageservice.model.Storage;
+import com.shop.storageservice.service.BulkRestockService;
+import com.shop.storageservice.service.LowStockService;
 import com.shop.storageservice.service.StorageService;
+import com.shop.storageservice.service.StripedStockService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,15 +24,16 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import java.math.BigDecimal;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Consumer;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -39,12 +48,21 @@ class StorageControllerTest {
     @MockBean
     private StorageService storageService;
 
+    @MockBean
+    private LowStockService lowStockService;
+
+    @MockBean
+    private StripedStockService stripedStockService;
+
+    @MockBean
+    private BulkRestockService bulkRestockService;
+
     private ProductDuplicateDTO productDuplicateDTO;
     private OrderWithProductCartDTO orderDuplicateDTO;
     private Storage storage;
     private ProductWithQuantityDTO productWithQuantityDTO;
 
-    private Map<ProductDuplicateDTO, Integer> cart;
+    private List<CartItemDTO> cart;
 
     private CartDTO cartDTO;
 
@@ -60,7 +78,11 @@ class StorageControllerTest {
                 .feedBack(BigDecimal.valueOf(4.5))
                 .build();
 
-        cart = new HashMap<>();
+        cart = List.of(CartItemDTO.builder()
+                .productId(1L)
+                .quantity(2)
+                .unitPrice(BigDecimal.valueOf(100))
+                .build());
         cartDTO = new CartDTO();
         cartDTO.setCart(cart);
 
@@ -155,10 +177,77 @@ class StorageControllerTest {
         verify(storageService, times(1)).deleteById(1L);
     }
 
+    @Test
+    void testUpdateLowStockThreshold() throws Exception {
+//        given
+        doNothing().when(lowStockService).updateThreshold(anyLong(), anyInt());
+
+//        when
+        mockMvc.perform(put("/api/v1/storage/threshold/1")
+                        .param("lowStockThreshold", "25"))
+                .andExpect(status().isOk());
+
+//        then
+        verify(lowStockService, times(1)).updateThreshold(1L, 25);
+    }
+
+    @Test
+    void testBulkRestockCsv() throws Exception {
+//        given
+        when(bulkRestockService.restock(any(), eq(StockFileFormat.CSV))).thenReturn(BulkRestockResultDTO.builder()
+                .reference("bulk-1")
+                .restockedLines(2)
+                .skippedLines(0)
+                .build());
+
+//        when
+        mockMvc.perform(post("/api/v1/storage/add/bulk")
+                        .contentType("text/csv")
+                        .content("1,5\n2,3\n"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.restockedLines").value(2));
+
+//        then
+        verify(bulkRestockService, times(1)).restock(any(), eq(StockFileFormat.CSV));
+    }
+
+    @Test
+    void testBulkRestockNdjson() throws Exception {
+//        when
+        mockMvc.perform(post("/api/v1/storage/add/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("{\"productId\":1,\"quantity\":5}\n"))
+                .andExpect(status().isOk());
+
+//        then
+        verify(bulkRestockService, times(1)).restock(any(), eq(StockFileFormat.NDJSON));
+    }
+
+    @Test
+    void testEnableStriping() throws Exception {
+//        when
+        mockMvc.perform(put("/api/v1/storage/hot/1")
+                        .param("stripes", "8"))
+                .andExpect(status().isOk());
+
+//        then
+        verify(stripedStockService, times(1)).enable(1L, 8);
+    }
+
+    @Test
+    void testDisableStriping() throws Exception {
+//        when
+        mockMvc.perform(delete("/api/v1/storage/hot/1"))
+                .andExpect(status().isOk());
+
+//        then
+        verify(stripedStockService, times(1)).disable(1L);
+    }
+
     @Test
     void raiseProductQuantityById() throws Exception {
 //        given
-        doNothing().when(storageService).raiseProductQuantityById(any(), anyInt());
+        doNothing().when(storageService).raiseProductQuantityById(any(), anyInt(), any());
 
 //        when
         mockMvc.perform(post("/api/v1/storage/add?quantityAdded=5")
@@ -167,7 +256,7 @@ class StorageControllerTest {
                 .andExpect(status().isOk());
 
 //        then
-        verify(storageService, times(1)).raiseProductQuantityById(productDuplicateDTO, 5);
+        verify(storageService, times(1)).raiseProductQuantityById(productDuplicateDTO, 5, null);
     }
 
     @Test
@@ -186,51 +275,81 @@ class StorageControllerTest {
     }
 
     @Test
-    void testIsOrderInStorage() throws Exception {
+    void testCheckOrder() throws Exception {
 //        given
-        when(storageService.isOrderInStorage(any())).thenReturn(true);
+        InventoryStatusDTO expectedResponse = InventoryStatusDTO.builder()
+                .isOrderInStorage(true)
+                .outOfStorageProducts(List.of())
+                .build();
+        when(storageService.checkOrder(cart, "customerId")).thenReturn(expectedResponse);
 
 //        when
-        mockMvc.perform(post("/api/v1/storage/check/order")
+        mockMvc.perform(post("/api/v1/storage/check/order/customerId")
                         .contentType(MediaType.APPLICATION_JSON_VALUE)
                         .content(new ObjectMapper().writeValueAsString(cartDTO)))
                 .andExpect(status().isOk())
-                .andExpect(content().string("true"));
+                .andExpect(content().json(new ObjectMapper().writeValueAsString(expectedResponse)));
 
 //        then
-        verify(storageService, times(1)).isOrderInStorage(cart);
+        verify(storageService, times(1)).checkOrder(cart, "customerId");
     }
 
     @Test
-    void testFindOutOfStorageProduct() throws Exception {
+    void testFindAllStorageWithQuantity() throws Exception {
 //        given
-        Map<ProductDuplicateDTO, Integer> expectedResponse = new HashMap<>();
-        when(storageService.findOutOfStorageProduct(cart, "customer1")).thenReturn(expectedResponse);
+        List<ProductWithQuantityDTO> expectedResponse = List.of(productWithQuantityDTO);
+        when(storageService.findAllStorageWithQuantity()).thenReturn(expectedResponse);
 
 //        when
-        mockMvc.perform(post("/api/v1/storage/find/order/out/customerId")
-                        .contentType(MediaType.APPLICATION_JSON_VALUE)
-                        .content(new ObjectMapper().writeValueAsString(cartDTO)))
+        mockMvc.perform(get("/api/v1/storage/find/all"))
                 .andExpect(status().isOk())
                 .andExpect(content().json(new ObjectMapper().writeValueAsString(expectedResponse)));
 
 //        then
-        verify(storageService, times(1)).findOutOfStorageProduct(cart, "customerId");
+        verify(storageService, times(1)).findAllStorageWithQuantity();
     }
 
     @Test
-    void testFindAllStorageWithQuantity() throws Exception {
+    void testFindPageStorageWithQuantity() throws Exception {
 //        given
-        List<ProductWithQuantityDTO> expectedResponse = List.of(productWithQuantityDTO);
-        when(storageService.findAllStorageWithQuantity()).thenReturn(expectedResponse);
+        ProductWithQuantityPageDTO expectedResponse = ProductWithQuantityPageDTO.builder()
+                .content(List.of(productWithQuantityDTO))
+                .nextAfterId(1L)
+                .build();
+        when(storageService.findPageStorageWithQuantity(0L, 1)).thenReturn(expectedResponse);
 
 //        when
-        mockMvc.perform(get("/api/v1/storage/find/all"))
+        mockMvc.perform(get("/api/v1/storage/find/page")
+                        .param("afterId", "0")
+                        .param("size", "1"))
                 .andExpect(status().isOk())
                 .andExpect(content().json(new ObjectMapper().writeValueAsString(expectedResponse)));
 
 //        then
-        verify(storageService, times(1)).findAllStorageWithQuantity();
+        verify(storageService, times(1)).findPageStorageWithQuantity(0L, 1);
+    }
+
+    @Test
+    void testStreamAllStorageWithQuantity() throws Exception {
+//        given
+        doAnswer(invocation -> {
+            Consumer<List<ProductWithQuantityDTO>> chunkConsumer = invocation.getArgument(0);
+            chunkConsumer.accept(List.of(productWithQuantityDTO));
+            chunkConsumer.accept(List.of(productWithQuantityDTO));
+            return null;
+        }).when(storageService).streamAllStorageWithQuantity(any());
+        String line = new ObjectMapper().writeValueAsString(productWithQuantityDTO);
+
+//        when
+        MvcResult mvcResult = mockMvc.perform(get("/api/v1/storage/find/all/stream"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+//        then
+        mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string(line + "\n" + line + "\n"));
     }
 }
 
@@ -0,0 +1,96 @@
+package com.shop.storageservice.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.storageservice.dto.AllocationDTO;
+import com.shop.storageservice.dto.AllocationLineDTO;
+import com.shop.storageservice.dto.StorageDuplicateDTO;
+import com.shop.storageservice.model.Warehouse;
+import com.shop.storageservice.service.AllocationService;
+import com.shop.storageservice.service.WarehouseStockService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(MockitoExtension.class)
+@WebMvcTest(WarehouseController.class)
+class WarehouseControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private WarehouseStockService warehouseStockService;
+
+    @MockBean
+    private AllocationService allocationService;
+
+    @Test
+    void testSaveWarehouse() throws Exception {
+//        given
+        Warehouse warehouse = Warehouse.builder().name("Kyiv").latitude(50.45).longitude(30.52).build();
+        when(warehouseStockService.saveWarehouse(any(Warehouse.class))).thenReturn(Warehouse.builder().id(1L).name("Kyiv").build());
+
+//        when
+        mockMvc.perform(post("/api/v1/storage/warehouse/save")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(warehouse)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1));
+
+//        then
+        verify(warehouseStockService, times(1)).saveWarehouse(warehouse);
+    }
+
+    @Test
+    void testFindStockByWarehouseId() throws Exception {
+//        given
+        when(warehouseStockService.findStockByWarehouseId(10L)).thenReturn(Map.of(1L, 4));
+
+//        when
+        mockMvc.perform(get("/api/v1/storage/warehouse/stock/10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.1").value(4));
+
+//        then
+        verify(warehouseStockService, times(1)).findStockByWarehouseId(10L);
+    }
+
+    @Test
+    void testAllocate() throws Exception {
+//        given
+        List<StorageDuplicateDTO> cart = List.of(StorageDuplicateDTO.builder().productId(10L).quantity(2).build());
+        when(allocationService.allocate(cart, 50.45, 30.52)).thenReturn(AllocationDTO.builder()
+                .isOrderInStorage(true)
+                .lines(List.of(AllocationLineDTO.builder().warehouseId(1L).productId(10L).quantity(2).build()))
+                .listOutOfStorageId(List.of())
+                .build());
+
+//        when
+        mockMvc.perform(post("/api/v1/storage/warehouse/allocate")
+                        .param("latitude", "50.45")
+                        .param("longitude", "30.52")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(cart)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.isOrderInStorage").value(true))
+                .andExpect(jsonPath("$.lines[0].warehouseId").value(1));
+
+//        then
+        verify(allocationService, times(1)).allocate(cart, 50.45, 30.52);
+    }
+}
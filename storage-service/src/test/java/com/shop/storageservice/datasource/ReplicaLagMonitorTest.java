@@ -0,0 +1,86 @@
+package com.shop.storageservice.datasource;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ReplicaLagMonitorTest {
+
+    @Mock
+    private JdbcTemplate replicaJdbcTemplate;
+
+    private ReplicaLagMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        monitor = new ReplicaLagMonitor(replicaJdbcTemplate, 1000);
+    }
+
+    @Test
+    void staleBeforeFirstCheck() {
+//        then
+        assertFalse(monitor.isFresh());
+    }
+
+    @Test
+    void freshWithinMaxLag() {
+//        given
+        when(replicaJdbcTemplate.queryForObject(ReplicaLagMonitor.LAG_QUERY, Long.class)).thenReturn(1000L);
+
+//        when
+        monitor.check();
+
+//        then
+        assertTrue(monitor.isFresh());
+    }
+
+    @Test
+    void staleBeyondMaxLag() {
+//        given
+        when(replicaJdbcTemplate.queryForObject(ReplicaLagMonitor.LAG_QUERY, Long.class)).thenReturn(0L, 1001L);
+
+//        when
+        monitor.check();
+        monitor.check();
+
+//        then
+        assertFalse(monitor.isFresh());
+    }
+
+    @Test
+    void staleWhenLagUnknown() {
+//        given
+        when(replicaJdbcTemplate.queryForObject(ReplicaLagMonitor.LAG_QUERY, Long.class)).thenReturn(0L, (Long) null);
+
+//        when
+        monitor.check();
+        monitor.check();
+
+//        then
+        assertFalse(monitor.isFresh());
+    }
+
+    @Test
+    void staleWhenCheckFails() {
+//        given
+        when(replicaJdbcTemplate.queryForObject(ReplicaLagMonitor.LAG_QUERY, Long.class))
+                .thenReturn(0L)
+                .thenThrow(new QueryTimeoutException("timeout"));
+
+//        when
+        monitor.check();
+        monitor.check();
+
+//        then
+        assertFalse(monitor.isFresh());
+    }
+}
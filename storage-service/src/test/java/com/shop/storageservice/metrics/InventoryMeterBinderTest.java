@@ -0,0 +1,68 @@
+package com.shop.storageservice.metrics;
+
+import com.shop.storageservice.repository.StorageRepository;
+import com.shop.storageservice.service.LowStockService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryMeterBinderTest {
+
+    @Mock
+    private StorageRepository repository;
+
+    @Mock
+    private LowStockService lowStockService;
+
+    @InjectMocks
+    private InventoryMeterBinder binder;
+
+    private MeterRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new SimpleMeterRegistry();
+        binder.bindTo(registry);
+    }
+
+    @Test
+    void skus() {
+//        given
+        when(repository.count()).thenReturn(120L);
+
+//        when
+        binder.refresh();
+
+//        then
+        assertEquals(120, registry.get("inventory.skus").gauge().value());
+        assertEquals(120, registry.get("inventory.skus").gauge().value());
+        verify(repository, times(1)).count();
+    }
+
+    @Test
+    void skusBeforeFirstRefresh() {
+//        then
+        assertTrue(Double.isNaN(registry.get("inventory.skus").gauge().value()));
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void lowStock() {
+//        given
+        when(lowStockService.countLowStock()).thenReturn(7L, (Long) null);
+
+//        then
+        assertEquals(7, registry.get("inventory.low.stock").gauge().value());
+        assertEquals(0, registry.get("inventory.low.stock").gauge().value());
+    }
+}
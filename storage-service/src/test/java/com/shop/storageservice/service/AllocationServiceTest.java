@@ -0,0 +1,129 @@
+package com.shop.storageservice.service;
+
+import com.shop.storageservice.dto.AllocationDTO;
+import com.shop.storageservice.dto.AllocationLineDTO;
+import com.shop.storageservice.dto.StorageDuplicateDTO;
+import com.shop.storageservice.model.Warehouse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AllocationServiceTest {
+
+    @Mock
+    private WarehouseStockService warehouseStockService;
+
+    @Mock
+    private StorageService storageService;
+
+    @InjectMocks
+    private AllocationService service;
+
+    private Warehouse kyiv;
+
+    private Warehouse lviv;
+
+    @BeforeEach
+    void setUp() {
+        kyiv = Warehouse.builder().id(1L).name("Kyiv").latitude(50.45).longitude(30.52).priority(2).build();
+        lviv = Warehouse.builder().id(2L).name("Lviv").latitude(49.84).longitude(24.03).priority(1).build();
+        lenient().when(warehouseStockService.findAllWarehouse()).thenReturn(List.of(kyiv, lviv));
+    }
+
+    @Test
+    void planFromNearestWarehouseHoldingWholeCart() {
+//        given
+        when(warehouseStockService.findStockByWarehouseId(10L)).thenReturn(Map.of(1L, 5, 2L, 5));
+        when(warehouseStockService.findStockByWarehouseId(20L)).thenReturn(Map.of(1L, 1, 2L, 3));
+
+//        when
+        List<AllocationLineDTO> lines = service.plan(cart(10L, 2, 20L, 2), 50.0, 30.0);
+
+//        then
+        assertEquals(List.of(
+                AllocationLineDTO.builder().warehouseId(2L).productId(10L).quantity(2).build(),
+                AllocationLineDTO.builder().warehouseId(2L).productId(20L).quantity(2).build()), lines);
+    }
+
+    @Test
+    void planSplitsCartByDistance() {
+//        given
+        when(warehouseStockService.findStockByWarehouseId(10L)).thenReturn(Map.of(1L, 1, 2L, 5));
+        when(warehouseStockService.findStockByWarehouseId(20L)).thenReturn(Map.of(1L, 3));
+
+//        when
+        List<AllocationLineDTO> lines = service.plan(cart(10L, 3, 20L, 4), 50.4, 30.5);
+
+//        then
+        assertEquals(List.of(
+                AllocationLineDTO.builder().warehouseId(1L).productId(10L).quantity(1).build(),
+                AllocationLineDTO.builder().warehouseId(2L).productId(10L).quantity(2).build(),
+                AllocationLineDTO.builder().warehouseId(1L).productId(20L).quantity(3).build(),
+                AllocationLineDTO.builder().productId(20L).quantity(1).build()), lines);
+    }
+
+    @Test
+    void planByPriorityWithoutDestination() {
+//        given
+        when(warehouseStockService.findStockByWarehouseId(10L)).thenReturn(Map.of(1L, 5, 2L, 5));
+
+//        when
+        List<AllocationLineDTO> lines = service.plan(cart(10L, 1), null, null);
+
+//        then
+        assertEquals(2L, lines.get(0).getWarehouseId());
+    }
+
+    @Test
+    void allocateOutOfStorage() {
+//        given
+        when(storageService.findAllQuantityById(anyCollection())).thenReturn(Map.of(10L, 5));
+
+//        when
+        AllocationDTO result = service.allocate(List.of(
+                StorageDuplicateDTO.builder().productId(10L).quantity(2).build(),
+                StorageDuplicateDTO.builder().productId(20L).quantity(1).build()), null, null);
+
+//        then
+        assertFalse(result.getIsOrderInStorage());
+        assertEquals(List.of(20L), result.getListOutOfStorageId());
+        assertTrue(result.getLines().isEmpty());
+    }
+
+    @Test
+    void allocate() {
+//        given
+        when(storageService.findAllQuantityById(anyCollection())).thenReturn(Map.of(10L, 5));
+        when(warehouseStockService.findStockByWarehouseId(10L)).thenReturn(Map.of(1L, 4));
+
+//        when
+        AllocationDTO result = service.allocate(List.of(
+                StorageDuplicateDTO.builder().productId(10L).quantity(2).build(),
+                StorageDuplicateDTO.builder().productId(10L).quantity(2).build()), null, null);
+
+//        then
+        assertTrue(result.getIsOrderInStorage());
+        assertEquals(List.of(AllocationLineDTO.builder().warehouseId(1L).productId(10L).quantity(4).build()),
+                result.getLines());
+    }
+
+    private Map<Long, Integer> cart(Object... productQuantities) {
+        Map<Long, Integer> cart = new LinkedHashMap<>();
+        for (int i = 0; i < productQuantities.length; i += 2) {
+            cart.put((Long) productQuantities[i], (Integer) productQuantities[i + 1]);
+        }
+        return cart;
+    }
+}
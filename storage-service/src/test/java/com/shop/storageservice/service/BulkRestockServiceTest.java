@@ -0,0 +1,125 @@
+package com.shop.storageservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shop.storageservice.dto.BulkRestockResultDTO;
+import com.shop.storageservice.enums.MovementType;
+import com.shop.storageservice.enums.StockFileFormat;
+import com.shop.storageservice.event.StockChangedEvent;
+import com.shop.storageservice.model.InventoryMovement;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BulkRestockServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private InventoryLedgerService inventoryLedgerService;
+
+    @Mock
+    private StockCache stockCache;
+
+    @Mock
+    private StockSubscriptionService stockSubscriptionService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private BulkRestockService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new BulkRestockService(jdbcTemplate, transactionTemplate, inventoryLedgerService, stockCache,
+                stockSubscriptionService, eventPublisher, new ObjectMapper());
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.getArgument(0, TransactionCallback.class).doInTransaction(null));
+    }
+
+    @Test
+    void restockCsv() throws Exception {
+//        given
+        BufferedReader reader = new BufferedReader(new StringReader("""
+                productId,quantity
+                2,5
+                2,4
+                1,3
+                not,a-line
+                3,-1
+                3,7
+                """));
+
+//        when
+        BulkRestockResultDTO result = service.restock(reader, StockFileFormat.CSV);
+
+//        then
+        assertEquals(4, result.getRestockedLines());
+        assertEquals(2, result.getSkippedLines());
+        ArgumentCaptor<List<Object[]>> batchArgs = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(2)).batchUpdate(contains("ON CONFLICT (product_id)"), batchArgs.capture());
+        assertArrayEquals(new Object[]{1L, 3}, batchArgs.getAllValues().get(0).get(0));
+        assertArrayEquals(new Object[]{2L, 9}, batchArgs.getAllValues().get(0).get(1));
+        assertArrayEquals(new Object[]{3L, 7}, batchArgs.getAllValues().get(1).get(0));
+        verify(stockCache, times(1)).evictAll(List.of(1L, 2L));
+        verify(eventPublisher, times(1)).publishEvent(new StockChangedEvent(List.of(1L, 2L)));
+        verify(stockSubscriptionService, times(1)).notifyAllRestocked(List.of(1L, 2L));
+        verify(stockSubscriptionService, times(1)).notifyAllRestocked(List.of(3L));
+        verify(inventoryLedgerService, times(1)).recordAll(List.of(InventoryMovement.builder()
+                .productId(3L)
+                .quantityChange(7)
+                .type(MovementType.RESTOCK)
+                .reference(result.getReference())
+                .build()));
+    }
+
+    @Test
+    void restockNdjson() throws Exception {
+//        given
+        BufferedReader reader = new BufferedReader(new StringReader("""
+                {"productId":1,"quantity":3}
+
+                {"productId":1}
+                """));
+
+//        when
+        BulkRestockResultDTO result = service.restock(reader, StockFileFormat.NDJSON);
+
+//        then
+        assertEquals(1, result.getRestockedLines());
+        assertEquals(1, result.getSkippedLines());
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void restockEmptyFile() throws Exception {
+//        when
+        BulkRestockResultDTO result = service.restock(new BufferedReader(new StringReader("")), StockFileFormat.CSV);
+
+//        then
+        assertEquals(0, result.getRestockedLines());
+        verifyNoInteractions(jdbcTemplate, transactionTemplate, stockSubscriptionService);
+    }
+}
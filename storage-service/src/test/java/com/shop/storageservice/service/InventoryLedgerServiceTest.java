@@ -0,0 +1,131 @@
+package com.shop.storageservice.service;
+
+import com.shop.storageservice.enums.MovementType;
+import com.shop.storageservice.model.InventoryMovement;
+import com.shop.storageservice.model.InventorySnapshot;
+import com.shop.storageservice.repository.InventoryMovementRepository;
+import com.shop.storageservice.repository.InventorySnapshotRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryLedgerServiceTest {
+
+    @Mock
+    private InventoryMovementRepository movementRepository;
+
+    @Mock
+    private InventorySnapshotRepository snapshotRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private InventoryLedgerService service;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "snapshotLag", 60000L);
+    }
+
+    @Test
+    void recordAll() {
+//        given
+        List<InventoryMovement> movements = List.of(
+                InventoryMovement.builder().productId(1L).quantityChange(-2).type(MovementType.ORDER).reference("order1").build(),
+                InventoryMovement.builder().productId(2L).quantityChange(0).type(MovementType.ADJUSTMENT).build());
+
+//        when
+        service.recordAll(movements);
+
+//        then
+        ArgumentCaptor<List<Object[]>> batchArgs = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith("INSERT INTO inventory_movement"), batchArgs.capture());
+        assertEquals(1, batchArgs.getValue().size());
+        assertEquals(1L, batchArgs.getValue().get(0)[0]);
+        assertEquals(-2, batchArgs.getValue().get(0)[1]);
+        assertEquals("ORDER", batchArgs.getValue().get(0)[2]);
+        assertEquals("order1", batchArgs.getValue().get(0)[3]);
+    }
+
+    @Test
+    void recordWithoutChange() {
+//        when
+        service.record(1L, 0, MovementType.ADJUSTMENT, null);
+
+//        then
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void findQuantityAt() {
+//        given
+        LocalDateTime at = LocalDateTime.of(2024, 5, 1, 12, 0);
+        LocalDateTime coveredUntil = LocalDateTime.of(2024, 5, 1, 11, 45);
+        InventorySnapshot snapshot = InventorySnapshot.builder()
+                .productId(1L)
+                .quantity(20)
+                .coveredUntil(coveredUntil)
+                .build();
+        when(snapshotRepository.findFirstByProductIdAndCoveredUntilLessThanEqualOrderByCoveredUntilDesc(1L, at))
+                .thenReturn(Optional.of(snapshot));
+        when(movementRepository.sumQuantityChange(1L, coveredUntil, at)).thenReturn(-3L);
+
+//        when
+        Integer quantity = service.findQuantityAt(1L, at);
+
+//        then
+        assertEquals(17, quantity);
+    }
+
+    @Test
+    void findQuantityAtWithoutSnapshot() {
+//        given
+        LocalDateTime at = LocalDateTime.of(2024, 5, 1, 12, 0);
+        when(snapshotRepository.findFirstByProductIdAndCoveredUntilLessThanEqualOrderByCoveredUntilDesc(1L, at))
+                .thenReturn(Optional.empty());
+        when(movementRepository.sumQuantityChange(1L, InventoryLedgerService.OPENING_BALANCE_TIME, at)).thenReturn(5L);
+
+//        when
+        Integer quantity = service.findQuantityAt(1L, at);
+
+//        then
+        assertEquals(5, quantity);
+    }
+
+    @Test
+    void takeSnapshots() {
+//        given
+        when(jdbcTemplate.update(startsWith("INSERT INTO inventory_snapshot"), any(), any(), any())).thenReturn(3);
+
+//        when
+        service.takeSnapshots();
+
+//        then
+        verify(jdbcTemplate, times(1)).update(startsWith("INSERT INTO inventory_snapshot"), any(), any(), any());
+    }
+
+    @Test
+    void openBalances() {
+//        when
+        service.openBalances();
+
+//        then
+        verify(jdbcTemplate, times(1)).update(contains("FROM storage st"), any(Object.class));
+    }
+}
@@ -0,0 +1,190 @@
+package com.shop.storageservice.service;
+
+import com.shop.storageservice.dto.StorageDuplicateDTO;
+import com.shop.storageservice.event.StockChangedEvent;
+import com.shop.storageservice.model.Storage;
+import com.shop.storageservice.repository.StorageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class LowStockServiceTest {
+
+    @Mock
+    private StorageRepository repository;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    @Mock
+    private ValueOperations<String, String> valueOperations;
+
+    @Mock
+    private KafkaTemplate<String, List<StorageDuplicateDTO>> kafkaProductVerification;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @InjectMocks
+    private LowStockService service;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "defaultThreshold", 10);
+        ReflectionTestUtils.setField(service, "thresholdCrossedEvent", true);
+        ReflectionTestUtils.setField(service, "rebuildLockTimeout", 600000L);
+    }
+
+    @Test
+    void refresh() {
+//        given
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        Storage lowStorage = Storage.builder().productId(1L).quantity(5).build();
+        Storage customThresholdStorage = Storage.builder().productId(2L).quantity(30).lowStockThreshold(50).build();
+        Storage enoughStorage = Storage.builder().productId(3L).quantity(30).build();
+        when(repository.findAllById(anyCollection())).thenReturn(List.of(lowStorage, customThresholdStorage, enoughStorage));
+        when(zSetOperations.add(LowStockService.LOW_STOCK_KEY, "1", 5)).thenReturn(true);
+        when(zSetOperations.add(LowStockService.LOW_STOCK_KEY, "2", 30)).thenReturn(false);
+
+//        when
+        service.refresh(List.of(1L, 2L, 3L, 4L));
+
+//        then
+        verify(zSetOperations, times(1)).remove(LowStockService.LOW_STOCK_KEY, "3");
+        verify(zSetOperations, times(1)).remove(LowStockService.LOW_STOCK_KEY, "4");
+        verify(kafkaProductVerification, times(1)).send("product-name-identifier-topic",
+                List.of(StorageDuplicateDTO.builder().productId(1L).quantity(5).build()));
+    }
+
+    @Test
+    void refreshWithoutThresholdCrossedEvent() {
+//        given
+        ReflectionTestUtils.setField(service, "thresholdCrossedEvent", false);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(repository.findAllById(anyCollection())).thenReturn(List.of(Storage.builder().productId(1L).quantity(5).build()));
+        when(zSetOperations.add(LowStockService.LOW_STOCK_KEY, "1", 5)).thenReturn(true);
+
+//        when
+        service.onStockChanged(new StockChangedEvent(List.of(1L)));
+
+//        then
+        verifyNoInteractions(kafkaProductVerification);
+    }
+
+    @Test
+    void findAllLowStock() {
+//        given
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        Set<ZSetOperations.TypedTuple<String>> lowStock = new LinkedHashSet<>();
+        lowStock.add(new DefaultTypedTuple<>("2", 1.0));
+        lowStock.add(new DefaultTypedTuple<>("1", 5.0));
+        when(zSetOperations.rangeWithScores(LowStockService.LOW_STOCK_KEY, 0, -1)).thenReturn(lowStock);
+
+//        when
+        List<StorageDuplicateDTO> result = service.findAllLowStock();
+
+//        then
+        assertEquals(List.of(
+                StorageDuplicateDTO.builder().productId(2L).quantity(1).build(),
+                StorageDuplicateDTO.builder().productId(1L).quantity(5).build()), result);
+    }
+
+    @Test
+    void updateThreshold() {
+//        when
+        service.updateThreshold(1L, 25);
+
+//        then
+        verify(repository, times(1)).updateLowStockThresholdById(1L, 25);
+        verify(eventPublisher, times(1)).publishEvent(new StockChangedEvent(List.of(1L)));
+    }
+
+    @Test
+    void rebuild() {
+//        given
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(LowStockService.REBUILD_LOCK_KEY), anyString(), any(Duration.class))).thenReturn(true);
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        when(repository.findAllLowStock(10)).thenReturn(List.of(Storage.builder().productId(1L).quantity(5).build()));
+
+//        when
+        service.rebuild();
+
+//        then
+        verify(zSetOperations, times(1)).add(LowStockService.REBUILD_KEY,
+                Set.of(new DefaultTypedTuple<>("1", 5.0)));
+        verify(redisTemplate, times(1)).rename(LowStockService.REBUILD_KEY, LowStockService.LOW_STOCK_KEY);
+        verify(redisTemplate, never()).delete(LowStockService.LOW_STOCK_KEY);
+        verify(redisTemplate, never()).delete(LowStockService.REBUILD_LOCK_KEY);
+    }
+
+    @Test
+    void rebuildWithoutLowStock() {
+//        given
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(LowStockService.REBUILD_LOCK_KEY), anyString(), any(Duration.class))).thenReturn(true);
+        when(repository.findAllLowStock(10)).thenReturn(List.of());
+
+//        when
+        service.rebuild();
+
+//        then
+        verify(redisTemplate, times(1)).delete(LowStockService.LOW_STOCK_KEY);
+        verify(redisTemplate, never()).rename(anyString(), anyString());
+    }
+
+    @Test
+    void rebuildLockedByAnotherInstance() {
+//        given
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.setIfAbsent(eq(LowStockService.REBUILD_LOCK_KEY), anyString(), any(Duration.class))).thenReturn(false);
+
+//        when
+        service.rebuild();
+
+//        then
+        verifyNoInteractions(repository);
+        verify(redisTemplate, never()).rename(anyString(), anyString());
+    }
+
+    @Test
+    void rebuildFailureReleasesLock() {
+//        given
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        ArgumentCaptor<String> owner = ArgumentCaptor.forClass(String.class);
+        when(valueOperations.setIfAbsent(eq(LowStockService.REBUILD_LOCK_KEY), owner.capture(), any(Duration.class))).thenReturn(true);
+        when(repository.findAllLowStock(10)).thenThrow(new IllegalStateException("database down"));
+        when(valueOperations.get(LowStockService.REBUILD_LOCK_KEY)).thenAnswer(invocation -> owner.getValue());
+
+//        when
+        assertThrows(IllegalStateException.class, () -> service.rebuild());
+
+//        then
+        verify(redisTemplate, times(1)).delete(LowStockService.REBUILD_LOCK_KEY);
+    }
+}
@@ -0,0 +1,78 @@
+package com.shop.storageservice.service;
+
+import com.shop.storageservice.repository.ProcessedOrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ProcessedOrderServiceTest {
+
+    @Mock
+    private ProcessedOrderRepository repository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private ProcessedOrderService service;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "timeToLive", 604800000L);
+    }
+
+    @Test
+    void markProcessed() {
+//        given
+        when(jdbcTemplate.query(any(PreparedStatementCreator.class), any(RowMapper.class)))
+                .thenReturn(List.of("order1", "order3"));
+
+//        when
+        Set<String> result = service.markProcessed(List.of("order1", "order2", "order3"));
+
+//        then
+        assertEquals(Set.of("order1", "order3"), result);
+        verify(jdbcTemplate, times(1)).query(any(PreparedStatementCreator.class), any(RowMapper.class));
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void markProcessedWithoutOrders() {
+//        when
+        Set<String> result = service.markProcessed(List.of());
+
+//        then
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void deleteExpired() {
+//        given
+        when(repository.deleteAllByProcessedAtBefore(any())).thenReturn(3);
+
+//        when
+        service.deleteExpired();
+
+//        then
+        verify(repository, times(1)).deleteAllByProcessedAtBefore(any());
+    }
+}
@@ -0,0 +1,229 @@
+package com.shop.storageservice.service;
+
+import com.shop.storageservice.dto.AllocationLineDTO;
+import com.shop.storageservice.dto.CartItemDTO;
+import com.shop.storageservice.dto.InventoryStatusDTO;
+import com.shop.storageservice.dto.OrderWithProductCartDTO;
+import com.shop.storageservice.enums.MovementType;
+import com.shop.storageservice.event.StockChangedEvent;
+import com.shop.storageservice.model.InventoryMovement;
+import com.shop.storageservice.model.Reservation;
+import com.shop.storageservice.repository.ReservationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReservationServiceTest {
+
+    @Mock
+    private StripedStockService stripedStockService;
+
+    @Mock
+    private WarehouseStockService warehouseStockService;
+
+    @Mock
+    private AllocationService allocationService;
+
+    @Mock
+    private ReservationRepository repository;
+
+    @Mock
+    private StockSubscriptionService stockSubscriptionService;
+
+    @Mock
+    private StockCache stockCache;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private InventoryLedgerService inventoryLedgerService;
+
+    @InjectMocks
+    private ReservationService service;
+
+    private CartItemDTO cartItemDTO;
+
+    private CartItemDTO cartItemDTO2;
+
+    private OrderWithProductCartDTO orderWithProductCartDTO;
+
+    private Reservation reservation;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "timeToLive", 900000L);
+
+        cartItemDTO = CartItemDTO.builder()
+                .productId(1L)
+                .quantity(1)
+                .unitPrice(new BigDecimal("9.99"))
+                .build();
+
+        cartItemDTO2 = CartItemDTO.builder()
+                .productId(2L)
+                .quantity(2)
+                .unitPrice(new BigDecimal("9.99"))
+                .build();
+
+        orderWithProductCartDTO = OrderWithProductCartDTO.builder()
+                .id("order1")
+                .customerId("customer1")
+                .cart(List.of(cartItemDTO2, cartItemDTO))
+                .build();
+
+        reservation = Reservation.builder()
+                .id(10L)
+                .orderId("order1")
+                .productId(1L)
+                .quantity(1)
+                .expiresAt(LocalDateTime.now())
+                .build();
+    }
+
+    @Test
+    void reserve() {
+//        given
+        when(stripedStockService.take(anyLong(), anyInt())).thenReturn(true);
+        List<AllocationLineDTO> allocation = List.of(
+                AllocationLineDTO.builder().warehouseId(5L).productId(1L).quantity(1).build(),
+                AllocationLineDTO.builder().warehouseId(5L).productId(2L).quantity(1).build(),
+                AllocationLineDTO.builder().productId(2L).quantity(1).build());
+        when(allocationService.plan(Map.of(1L, 1, 2L, 2), null, null)).thenReturn(allocation);
+        when(warehouseStockService.take(allocation)).thenReturn(allocation);
+
+//        when
+        InventoryStatusDTO result = service.reserve(orderWithProductCartDTO);
+
+//        then
+        assertTrue(result.getIsOrderInStorage());
+        assertTrue(result.getOutOfStorageProducts().isEmpty());
+        verify(stripedStockService).take(1L, 1);
+        verify(stripedStockService).take(2L, 2);
+        ArgumentCaptor<List<Reservation>> reservationCaptor = ArgumentCaptor.forClass(List.class);
+        verify(repository, times(1)).saveAll(reservationCaptor.capture());
+        assertEquals(3, reservationCaptor.getValue().size());
+        assertEquals(5L, reservationCaptor.getValue().get(1).getWarehouseId());
+        assertNull(reservationCaptor.getValue().get(2).getWarehouseId());
+        verify(stripedStockService, never()).add(anyLong(), anyInt());
+        verify(stockCache, times(1)).evict(1L);
+        verify(stockCache, times(1)).evict(2L);
+        verify(eventPublisher, times(1)).publishEvent(new StockChangedEvent(List.of(1L, 2L)));
+        ArgumentCaptor<List<InventoryMovement>> movementCaptor = ArgumentCaptor.forClass(List.class);
+        verify(inventoryLedgerService, times(1)).recordAll(movementCaptor.capture());
+        assertEquals(2, movementCaptor.getValue().size());
+        assertEquals(MovementType.RESERVATION, movementCaptor.getValue().get(0).getType());
+        assertEquals(-1, movementCaptor.getValue().get(0).getQuantityChange());
+    }
+
+    @Test
+    void reserveWithOutOfStorageProduct() {
+//        given
+        when(stripedStockService.take(1L, 1)).thenReturn(true);
+        when(stripedStockService.take(2L, 2)).thenReturn(false);
+
+//        when
+        InventoryStatusDTO result = service.reserve(orderWithProductCartDTO);
+
+//        then
+        assertFalse(result.getIsOrderInStorage());
+        assertEquals(List.of(cartItemDTO2), result.getOutOfStorageProducts());
+        verify(stripedStockService, times(1)).add(1L, 1);
+        verify(stockSubscriptionService, times(1)).subscribe("customer1", List.of(2L));
+        verify(inventoryLedgerService, never()).recordAll(any());
+        verify(repository, never()).saveAll(any());
+    }
+
+    @Test
+    void commit() {
+//        given
+        when(repository.deleteAllByOrderId(anyString())).thenReturn(2);
+
+//        when
+        service.commit("order1");
+
+//        then
+        verify(repository, times(1)).deleteAllByOrderId("order1");
+        verifyNoInteractions(stripedStockService);
+    }
+
+    @Test
+    void release() {
+//        given
+        when(repository.findAllByOrderId(anyString())).thenReturn(List.of(reservation));
+        when(repository.deleteReservationById(anyLong())).thenReturn(1);
+
+//        when
+        service.release("order1");
+
+//        then
+        verify(repository, times(1)).deleteReservationById(10L);
+        verify(stripedStockService, times(1)).add(1L, 1);
+        verify(stockCache, times(1)).evict(1L);
+        verify(eventPublisher, times(1)).publishEvent(new StockChangedEvent(Set.of(1L)));
+        verify(inventoryLedgerService, times(1)).recordAll(List.of(InventoryMovement.builder()
+                .productId(1L)
+                .quantityChange(1)
+                .type(MovementType.RELEASE)
+                .reference("order1")
+                .build()));
+    }
+
+    @Test
+    void releaseToWarehouse() {
+//        given
+        reservation.setWarehouseId(5L);
+        when(repository.findAllByOrderId(anyString())).thenReturn(List.of(reservation));
+        when(repository.deleteReservationById(anyLong())).thenReturn(1);
+
+//        when
+        service.release("order1");
+
+//        then
+        verify(stripedStockService, times(1)).add(1L, 1);
+        verify(warehouseStockService, times(1)).add(5L, 1L, 1);
+    }
+
+    @Test
+    void releaseAlreadyCommitted() {
+//        given
+        when(repository.findAllByOrderId(anyString())).thenReturn(List.of(reservation));
+        when(repository.deleteReservationById(anyLong())).thenReturn(0);
+
+//        when
+        service.release("order1");
+
+//        then
+        verify(stripedStockService, never()).add(anyLong(), anyInt());
+    }
+
+    @Test
+    void releaseExpired() {
+//        given
+        when(repository.findAllByExpiresAtBefore(any())).thenReturn(List.of(reservation));
+        when(repository.deleteReservationById(anyLong())).thenReturn(1);
+
+//        when
+        service.releaseExpired();
+
+//        then
+        verify(stripedStockService, times(1)).add(1L, 1);
+    }
+}
@@ -0,0 +1,81 @@
+package com.shop.storageservice.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class StockCacheTest {
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @InjectMocks
+    private StockCache stockCache;
+
+    @BeforeEach
+    void setUp() {
+        when(cacheManager.getCache(StockCache.CACHE_NAME)).thenReturn(new ConcurrentMapCache(StockCache.CACHE_NAME));
+    }
+
+    @Test
+    void putAndGet() {
+//        when
+        stockCache.put(1L, 10);
+
+//        then
+        assertEquals(10, stockCache.get(1L));
+        assertNull(stockCache.get(2L));
+    }
+
+    @Test
+    void loadKeepsNewerQuantity() {
+//        given
+        stockCache.put(1L, 10);
+
+//        when
+        stockCache.load(1L, 15);
+        stockCache.load(2L, 20);
+
+//        then
+        assertEquals(10, stockCache.get(1L));
+        assertEquals(20, stockCache.get(2L));
+    }
+
+    @Test
+    void evict() {
+//        given
+        stockCache.put(1L, 10);
+
+//        when
+        stockCache.evict(1L);
+
+//        then
+        assertNull(stockCache.get(1L));
+    }
+
+    @Test
+    void evictAll() {
+//        given
+        stockCache.put(1L, 10);
+        stockCache.put(2L, 20);
+
+//        when
+        stockCache.evictAll(List.of(1L, 2L));
+
+//        then
+        assertNull(stockCache.get(1L));
+        assertNull(stockCache.get(2L));
+    }
+}
@@ -0,0 +1,142 @@
+package com.shop.storageservice.service;
+
+import com.shop.storageservice.client.ProductClient;
+import com.shop.storageservice.dto.BackInStockDTO;
+import com.shop.storageservice.dto.ProductWithQuantityDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockSubscriptionServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private KafkaTemplate<String, BackInStockDTO> kafkaBackInStock;
+
+    @Mock
+    private ProductClient productClient;
+
+    @InjectMocks
+    private StockSubscriptionService service;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "notificationBatchSize", 2);
+    }
+
+    @Test
+    void subscribe() {
+//        when
+        service.subscribe("customer1", List.of(1L, 2L));
+
+//        then
+        ArgumentCaptor<List<Object[]>> argsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(contains("ON CONFLICT DO NOTHING"), argsCaptor.capture());
+        assertEquals(2, argsCaptor.getValue().size());
+        assertEquals(1L, argsCaptor.getValue().get(0)[0]);
+        assertEquals("customer1", argsCaptor.getValue().get(0)[1]);
+    }
+
+    @Test
+    void subscribeWithoutCustomer() {
+//        when
+        service.subscribe(null, List.of(1L));
+
+//        then
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void notifyRestocked() {
+//        given
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq(1L)))
+                .thenReturn(List.of("customer1", "customer2", "customer3"));
+
+//        when
+        service.notifyRestocked(1L, "Test Product");
+
+//        then
+        ArgumentCaptor<BackInStockDTO> notificationCaptor = ArgumentCaptor.forClass(BackInStockDTO.class);
+        verify(kafkaBackInStock, times(2)).send(eq(StockSubscriptionService.BACK_IN_STOCK_TOPIC), eq("1"), notificationCaptor.capture());
+        assertEquals(List.of("customer1", "customer2"), notificationCaptor.getAllValues().get(0).getListCustomerId());
+        assertEquals(List.of("customer3"), notificationCaptor.getAllValues().get(1).getListCustomerId());
+        assertEquals("Test Product", notificationCaptor.getAllValues().get(1).getProductName());
+    }
+
+    @Test
+    void notifyRestockedWithoutSubscribers() {
+//        given
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq(1L))).thenReturn(List.of());
+
+//        when
+        service.notifyRestocked(1L, "Test Product");
+
+//        then
+        verifyNoInteractions(kafkaBackInStock);
+    }
+
+    @Test
+    void notifyAllRestocked() throws Exception {
+//        given
+        mockClaimedSubscriptions();
+        when(productClient.getAllProductWithQuantity(anyList())).thenReturn(List.of(
+                ProductWithQuantityDTO.builder().id(1L).name("Test Product").build()));
+
+//        when
+        service.notifyAllRestocked(List.of(1L, 2L));
+
+//        then
+        ArgumentCaptor<BackInStockDTO> notificationCaptor = ArgumentCaptor.forClass(BackInStockDTO.class);
+        verify(kafkaBackInStock, times(1)).send(eq(StockSubscriptionService.BACK_IN_STOCK_TOPIC), eq("1"), notificationCaptor.capture());
+        assertEquals(List.of("customer1", "customer2"), notificationCaptor.getValue().getListCustomerId());
+        assertEquals("Test Product", notificationCaptor.getValue().getProductName());
+        verify(kafkaBackInStock, never()).send(anyString(), eq("2"), any());
+    }
+
+    @Test
+    void notifyAllRestockedRestoresSubscriptions() throws Exception {
+//        given
+        mockClaimedSubscriptions();
+        when(productClient.getAllProductWithQuantity(anyList())).thenThrow(new RuntimeException("unavailable"));
+
+//        when
+        service.notifyAllRestocked(List.of(1L, 2L));
+
+//        then
+        verifyNoInteractions(kafkaBackInStock);
+        ArgumentCaptor<List<Object[]>> argsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(contains("ON CONFLICT DO NOTHING"), argsCaptor.capture());
+        assertEquals(3, argsCaptor.getValue().size());
+    }
+
+    private void mockClaimedSubscriptions() throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(1)).thenReturn(1L, 1L, 2L);
+        when(rs.getString(2)).thenReturn("customer1", "customer2", "customer3");
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(rs);
+            handler.processRow(rs);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("DELETE FROM stock_subscription"), any(RowCallbackHandler.class), eq(1L), eq(2L));
+    }
+}
@@ -1,21 +1,34 @@
 package com.shop.storageservice.service;
 
-import com.shop.storageservice.client.CustomerClient;
 import com.shop.storageservice.client.ProductClient;
 import com.shop.storageservice.dto.*;
+import com.shop.storageservice.enums.MovementType;
+import com.shop.storageservice.event.StockChangedEvent;
+import com.shop.storageservice.model.InventoryMovement;
 import com.shop.storageservice.model.Storage;
 import com.shop.storageservice.repository.StorageRepository;
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.Query;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.sql.ResultSet;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -33,13 +46,40 @@ class StorageServiceTest {
     private StorageRepository repository;
 
     @Mock
-    private CustomerClient customerClient;
+    private ProductClient productClient;
 
     @Mock
-    private ProductClient productClient;
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Spy
+    private MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private ProcessedOrderService processedOrderService;
+
+    @Mock
+    private StockCache stockCache;
+
+    @Mock
+    private StockSubscriptionService stockSubscriptionService;
 
     @Mock
-    private EntityManager entityManager;
+    private LowStockService lowStockService;
+
+    @Mock
+    private StripedStockService stripedStockService;
+
+    @Mock
+    private WarehouseStockService warehouseStockService;
+
+    @Mock
+    private InventoryLedgerService inventoryLedgerService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
 
     @InjectMocks
     private StorageService service;
@@ -50,6 +90,12 @@ class StorageServiceTest {
 
     @BeforeEach
     void setUp() {
+        ReflectionTestUtils.setField(service, "chunkSize", 500);
+        ReflectionTestUtils.setField(service, "maxPageSize", 1000);
+        ReflectionTestUtils.setField(service, "maxWriteAttempts", 3);
+        lenient().when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.getArgument(0, TransactionCallback.class).doInTransaction(null));
+
         productDuplicateDTO = ProductDuplicateDTO.builder()
                 .id(1L)
                 .name("Test Product")
@@ -72,77 +118,205 @@ class StorageServiceTest {
     void raiseProductQuantityById() {
 //        given
         int quantityAdded = 5;
-        doNothing().when(customerClient).customerIdentify(any());
-        doNothing().when(repository).raiseProductQuantityById(anyLong(), anyInt());
-        Map<Long, String> outMapWithId = new HashMap<>();
-        outMapWithId.put(1L, "123");
-        service.setOutMapWithId(outMapWithId);
-        Map<String, String> expectedProductWasOutMap = new HashMap<>();
-        expectedProductWasOutMap.put("123", "Test Product");
 
 //        when
         service.raiseProductQuantityById(productDuplicateDTO, quantityAdded);
 
 //        then
-        verify(repository).raiseProductQuantityById(productDuplicateDTO.getId(), quantityAdded);
-        verify(customerClient).customerIdentify(expectedProductWasOutMap);
-        verifyNoMoreInteractions(repository, customerClient);
+        verify(stripedStockService).add(productDuplicateDTO.getId(), quantityAdded);
+        verify(stockCache).evict(productDuplicateDTO.getId());
+        verify(stockSubscriptionService).notifyRestocked(productDuplicateDTO.getId(), "Test Product");
+        verify(inventoryLedgerService).record(productDuplicateDTO.getId(), quantityAdded, MovementType.RESTOCK, null);
+        verify(eventPublisher).publishEvent(new StockChangedEvent(List.of(productDuplicateDTO.getId())));
+        verifyNoMoreInteractions(repository, stockSubscriptionService);
 
     }
 
+    @Test
+    void raiseProductQuantityInWarehouse() {
+//        when
+        service.raiseProductQuantityById(productDuplicateDTO, 5, 3L);
+
+//        then
+        verify(stripedStockService).add(1L, 5);
+        verify(warehouseStockService).add(3L, 1L, 5);
+    }
+
     @Test
     void saveProduct() {
 //        given
-        when(repository.save(any())).thenReturn(storage);
+        when(repository.saveAndFlush(any())).thenReturn(storage);
 
 //        when
         service.saveProduct(100, productDuplicateDTO);
 
 //        then
-        verify(repository, times(1)).save(any(Storage.class));
+        verify(repository, times(1)).saveAndFlush(any(Storage.class));
+        verify(stockCache, times(1)).evict(1L);
+        verify(inventoryLedgerService, times(1)).record(1L, 100, MovementType.ADJUSTMENT, null);
     }
 
     @Test
     void updateProduct() {
 //        given
-        when(repository.save(any())).thenReturn(storage);
+        when(repository.saveAndFlush(any())).thenReturn(storage);
+
+        storage.setLowStockThreshold(50);
+        when(repository.findById(1L)).thenReturn(Optional.of(storage));
+        when(stripedStockService.spread(1L, 200)).thenReturn(null);
+
+//        when
+        service.updateProduct(200, productDuplicateDTO);
+
+//        then
+        ArgumentCaptor<Storage> storageCaptor = ArgumentCaptor.forClass(Storage.class);
+        verify(repository, times(1)).saveAndFlush(storageCaptor.capture());
+        assertEquals(200, storageCaptor.getValue().getQuantity());
+        assertEquals(50, storageCaptor.getValue().getLowStockThreshold());
+        verify(warehouseStockService, times(1)).fit(List.of(1L));
+        verify(stockCache, times(1)).evict(1L);
+        verify(eventPublisher, times(1)).publishEvent(new StockChangedEvent(List.of(1L)));
+        verify(inventoryLedgerService, times(1)).record(1L, 190, MovementType.ADJUSTMENT, null);
+    }
+
+    @Test
+    void updateProductRetriesOnConflict() {
+//        given
+        when(repository.findById(1L)).thenReturn(Optional.of(storage));
+        when(repository.saveAndFlush(any()))
+                .thenThrow(new OptimisticLockingFailureException("conflict"))
+                .thenReturn(storage);
+
+//        when
+        service.updateProduct(200, productDuplicateDTO);
+
+//        then
+        verify(repository, times(2)).findById(1L);
+        verify(repository, times(2)).saveAndFlush(any(Storage.class));
+        verify(stockCache, times(1)).evict(1L);
+        assertEquals(1, meterRegistry.counter("storage.write.conflicts").count());
+    }
+
+    @Test
+    void updateProductGivesUpAfterMaxAttempts() {
+//        given
+        when(repository.findById(1L)).thenReturn(Optional.of(storage));
+        when(repository.saveAndFlush(any())).thenThrow(new OptimisticLockingFailureException("conflict"));
+
+//        when
+        assertThrows(OptimisticLockingFailureException.class, () -> service.updateProduct(200, productDuplicateDTO));
+
+//        then
+        verify(repository, times(3)).saveAndFlush(any(Storage.class));
+        verifyNoInteractions(stockCache, eventPublisher);
+        assertEquals(3, meterRegistry.counter("storage.write.conflicts").count());
+        assertEquals(1, meterRegistry.counter("storage.write.exhausted").count());
+    }
+
+    @Test
+    void updateStripedProduct() {
+//        given
+        when(repository.saveAndFlush(any())).thenReturn(storage);
+        when(repository.findById(1L)).thenReturn(Optional.of(storage));
+        when(stripedStockService.spread(1L, 200)).thenReturn(40);
 
 //        when
         service.updateProduct(200, productDuplicateDTO);
 
 //        then
-        verify(repository, times(1)).save(any(Storage.class));
+        ArgumentCaptor<Storage> storageCaptor = ArgumentCaptor.forClass(Storage.class);
+        verify(repository, times(1)).saveAndFlush(storageCaptor.capture());
+        assertEquals(0, storageCaptor.getValue().getQuantity());
+        verify(stockCache, times(1)).evict(1L);
+        verify(inventoryLedgerService, times(1)).record(1L, 150, MovementType.ADJUSTMENT, null);
     }
 
     @Test
     void findAllStorageWithQuantity() {
 //        given
-        when(repository.findAll()).thenReturn(Collections.singletonList(storage));
-        when(productClient.getAllProductWithQuantity(anyList())).thenReturn(new ArrayList<>());
+        ReflectionTestUtils.setField(service, "chunkSize", 1);
+        Storage storage2 = Storage.builder()
+                .productId(2L)
+                .quantity(20)
+                .build();
+        when(repository.findAllByProductIdGreaterThanOrderByProductId(Long.MIN_VALUE, Limit.of(1))).thenReturn(List.of(storage));
+        when(repository.findAllByProductIdGreaterThanOrderByProductId(1L, Limit.of(1))).thenReturn(List.of(storage2));
+        when(repository.findAllByProductIdGreaterThanOrderByProductId(2L, Limit.of(1))).thenReturn(List.of());
+        when(productClient.getAllProductWithQuantity(anyList())).thenAnswer(invocation -> {
+            List<StorageDuplicateDTO> storageList = invocation.getArgument(0);
+            return List.of(ProductWithQuantityDTO.builder()
+                    .id(storageList.get(0).getProductId())
+                    .quantity(storageList.get(0).getQuantity())
+                    .build());
+        });
 
 //        when
         List<ProductWithQuantityDTO> result = service.findAllStorageWithQuantity();
 
 //        then
-        assertEquals(0, result.size());
-        verify(repository, times(1)).findAll();
+        assertEquals(2, result.size());
+        assertEquals(10, result.get(0).getQuantity());
+        assertEquals(20, result.get(1).getQuantity());
+        verify(productClient, times(2)).getAllProductWithQuantity(anyList());
+        verify(repository, never()).findAll();
+    }
+
+    @Test
+    void findPageStorageWithQuantity() {
+//        given
+        Storage storage2 = Storage.builder()
+                .productId(2L)
+                .quantity(20)
+                .build();
+        when(repository.findAllByProductIdGreaterThanOrderByProductId(0L, Limit.of(2))).thenReturn(List.of(storage, storage2));
+        when(productClient.getAllProductWithQuantity(anyList())).thenReturn(List.of(
+                ProductWithQuantityDTO.builder().id(2L).quantity(20).build(),
+                ProductWithQuantityDTO.builder().id(1L).quantity(10).build()));
+
+//        when
+        ProductWithQuantityPageDTO result = service.findPageStorageWithQuantity(0L, 2);
+
+//        then
+        assertEquals(2L, result.getNextAfterId());
+        assertEquals(1L, result.getContent().get(0).getId());
+        assertEquals(2L, result.getContent().get(1).getId());
+    }
+
+    @Test
+    void findPageStorageWithQuantityLastPage() {
+//        given
+        when(repository.findAllByProductIdGreaterThanOrderByProductId(0L, Limit.of(1000))).thenReturn(List.of(storage));
+        when(productClient.getAllProductWithQuantity(anyList())).thenReturn(List.of(
+                ProductWithQuantityDTO.builder().id(1L).quantity(10).build()));
+
+//        when
+        ProductWithQuantityPageDTO result = service.findPageStorageWithQuantity(0L, 5000);
+
+//        then
+        assertNull(result.getNextAfterId());
+        assertEquals(1, result.getContent().size());
     }
 
     @Test
     void deleteById() {
 //        given
         doNothing().when(repository).deleteById(anyLong());
+        when(repository.findByIdForUpdate(1L)).thenReturn(Optional.of(storage));
 
 //        when
         service.deleteById(1L);
 
 //        then
         verify(repository, times(1)).deleteById(1L);
+        verify(stockCache, times(1)).evict(1L);
+        verify(eventPublisher, times(1)).publishEvent(new StockChangedEvent(List.of(1L)));
+        verify(inventoryLedgerService, times(1)).record(1L, -10, MovementType.ADJUSTMENT, null);
     }
 
     @Test
     void findById() {
 //        given
+        when(stockCache.get(anyLong())).thenReturn(null);
         when(repository.findById(anyLong())).thenReturn(Optional.of(storage));
 
 //        when
@@ -151,11 +325,26 @@ class StorageServiceTest {
 //        then
         assertEquals(storage, result);
         verify(repository, times(1)).findById(1L);
+        verify(stockCache, times(1)).load(1L, 10);
+    }
+
+    @Test
+    void findByIdFromCache() {
+//        given
+        when(stockCache.get(anyLong())).thenReturn(10);
+
+//        when
+        Storage result = service.findById(1L);
+
+//        then
+        assertEquals(storage, result);
+        verifyNoInteractions(repository);
     }
 
     @Test
     void isInStorage() {
 //        given
+        when(stockCache.get(anyLong())).thenReturn(null);
         when(repository.findById(anyLong())).thenReturn(Optional.of(storage));
 
 //        when
@@ -167,71 +356,296 @@ class StorageServiceTest {
     }
 
     @Test
-    void isOrderInStorage() {
+    void isInStorageFromCache() {
 //        given
-        Map<ProductDuplicateDTO, Integer> cart = new HashMap<>();
-        cart.put(productDuplicateDTO, 5);
-        when(repository.findById(anyLong())).thenReturn(Optional.of(storage));
+        when(stockCache.get(anyLong())).thenReturn(10);
+
+//        when
+        Boolean smallResult = service.isInStorage(1L, 1);
+        Boolean bigResult = service.isInStorage(1L, 500);
+
+//        then
+        assertTrue(smallResult);
+        assertFalse(bigResult);
+        verifyNoInteractions(repository);
+    }
+
+    @Test
+    void checkOrder() {
+//        given
+        when(stockCache.get(anyLong())).thenReturn(null);
+        List<CartItemDTO> cart = List.of(cartItem(1L, 5));
+        when(repository.findAllById(anyList())).thenReturn(List.of(storage));
+
+//        when
+        InventoryStatusDTO result = service.checkOrder(cart, "1L");
+
+//        then
+        assertTrue(result.getIsOrderInStorage());
+        assertTrue(result.getOutOfStorageProducts().isEmpty());
+        verify(repository, times(1)).findAllById(List.of(1L));
+        verify(stockCache, times(1)).load(1L, 10);
+        verifyNoMoreInteractions(repository);
+    }
+
+    @Test
+    void checkOrderFromCache() {
+//        given
+        List<CartItemDTO> cart = List.of(cartItem(1L, 5), cartItem(2L, 1));
+        when(stockCache.get(1L)).thenReturn(10);
+        when(stockCache.get(2L)).thenReturn(null);
+        when(repository.findAllById(anyList())).thenReturn(List.of(Storage.builder()
+                .productId(2L)
+                .quantity(3)
+                .build()));
 
 //        when
-        Boolean result = service.isOrderInStorage(cart);
+        InventoryStatusDTO result = service.checkOrder(cart, "1L");
 
 //        then
-        assertTrue(result);
+        assertTrue(result.getIsOrderInStorage());
+        verify(repository, times(1)).findAllById(List.of(2L));
+        verify(stockCache, times(1)).load(2L, 3);
     }
 
     @Test
-    void findOutOfStorageProduct() {
+    void checkOrderWithOutOfStorageProduct() {
 //        given
-        Map<ProductDuplicateDTO, Integer> cart = new HashMap<>();
-        cart.put(productDuplicateDTO, 15);
+        when(stockCache.get(anyLong())).thenReturn(null);
+        List<CartItemDTO> cart = List.of(cartItem(1L, 15), cartItem(2L, 1));
+        when(repository.findAllById(anyList())).thenReturn(List.of(storage));
 
 //        when
-        Map<ProductDuplicateDTO, Integer> result = service.findOutOfStorageProduct(cart, "1L");
+        InventoryStatusDTO result = service.checkOrder(cart, "1L");
 
 //        then
-        assertTrue(result.containsKey(productDuplicateDTO));
+        assertFalse(result.getIsOrderInStorage());
+        assertEquals(cart, result.getOutOfStorageProducts());
+        verify(stockSubscriptionService, times(1)).subscribe("1L", List.of(1L, 2L));
+        verify(repository, times(1)).findAllById(anyList());
     }
 
     @Test
     void productVerification() {
 //        given
-        when(repository.findAll()).thenReturn(List.of(storage));
+        List<StorageDuplicateDTO> productsWithLack = List.of(StorageDuplicateDTO.builder()
+                .productId(1L)
+                .quantity(5)
+                .build());
+        when(lowStockService.findAllLowStock()).thenReturn(productsWithLack);
 
 //        when
         service.productVerification();
 
 //        then
-        verify(kafkaProductVerification, times(1)).send(eq("product-name-identifier-topic"), anyList());
+        verify(kafkaProductVerification, times(1)).send("product-name-identifier-topic", productsWithLack);
+        verify(repository, never()).findAll();
     }
 
     @Test
     void reduceQuantityById() {
 //        given
         OrderWithProductCartDTO orderDuplicateDTO = new OrderWithProductCartDTO();
-        Map<ProductDuplicateDTO, Integer> cart = new HashMap<>();
-        cart.put(productDuplicateDTO, 1);
-        ProductDuplicateDTO productDuplicateDTO2 = ProductDuplicateDTO.builder()
-                .id(2L)
-                .name("Test Product2")
-                .description("Test Description2")
-                .cost(new BigDecimal("9.99"))
-                .producer("Test Producer2")
-                .category("Test Category2")
-                .feedBack(new BigDecimal("4.5"))
+        orderDuplicateDTO.setId("order1");
+        orderDuplicateDTO.setCart(List.of(cartItem(1L, 1), cartItem(2L, 2)));
+        when(processedOrderService.markProcessed(anyList())).thenReturn(new HashSet<>(Set.of("order1")));
+
+//        when
+        service.reduceQuantityById(orderDuplicateDTO);
+
+//        then
+        ArgumentCaptor<List<Object[]>> batchArgs = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), batchArgs.capture());
+        assertEquals(2, batchArgs.getValue().size());
+        verify(jdbcTemplate, times(1)).query(startsWith("DELETE FROM reservation"), any(RowCallbackHandler.class), eq("order1"));
+    }
+
+    @Test
+    void reduceQuantity() throws Exception {
+//        given
+        OrderWithProductCartDTO reservedOrder = OrderWithProductCartDTO.builder()
+                .id("order1")
+                .cart(List.of(cartItem(1L, 4)))
+                .build();
+        OrderWithProductCartDTO firstOrder = OrderWithProductCartDTO.builder()
+                .id("order2")
+                .cart(List.of(cartItem(1L, 1)))
                 .build();
-        cart.put(productDuplicateDTO2, 2);
-        orderDuplicateDTO.setCart(cart);
+        OrderWithProductCartDTO secondOrder = OrderWithProductCartDTO.builder()
+                .id("order3")
+                .cart(List.of(cartItem(1L, 2)))
+                .build();
+        when(processedOrderService.markProcessed(anyList())).thenReturn(new HashSet<>(Set.of("order1", "order2", "order3")));
+        stubCommittedReservations(new Object[]{"order1", 1L, 4});
 
-        Query queryMock = mock(Query.class);
-        when(entityManager.createNativeQuery(anyString())).thenReturn(queryMock);
-        when(queryMock.executeUpdate()).thenReturn(1);
+//        when
+        service.reduceQuantity(List.of(reservedOrder, firstOrder, secondOrder));
+
+//        then
+        verify(jdbcTemplate, times(1)).query(startsWith("DELETE FROM reservation"), any(RowCallbackHandler.class),
+                eq("order1"), eq("order2"), eq("order3"));
+        ArgumentCaptor<List<Object[]>> batchArgs = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), batchArgs.capture());
+        assertEquals(1, batchArgs.getValue().size());
+        assertArrayEquals(new Object[]{3, 1L}, batchArgs.getValue().get(0));
+        verify(warehouseStockService, times(1)).fit(Set.of(1L));
+        verify(stockCache, times(1)).evictAll(Set.of(1L));
+        ArgumentCaptor<List<InventoryMovement>> movementCaptor = ArgumentCaptor.forClass(List.class);
+        verify(inventoryLedgerService, times(1)).recordAll(movementCaptor.capture());
+        assertEquals(2, movementCaptor.getValue().size());
+        assertEquals(-1, movementCaptor.getValue().get(0).getQuantityChange());
+        assertEquals("order2", movementCaptor.getValue().get(0).getReference());
+        assertEquals(MovementType.ORDER, movementCaptor.getValue().get(1).getType());
+    }
+
+    @Test
+    void reduceQuantityOfStripedProduct() {
+//        given
+        OrderWithProductCartDTO order = OrderWithProductCartDTO.builder()
+                .id("order1")
+                .cart(List.of(cartItem(1L, 1), cartItem(2L, 3)))
+                .build();
+        when(processedOrderService.markProcessed(anyList())).thenReturn(new HashSet<>(Set.of("order1")));
+        when(stripedStockService.isStriped(1L)).thenReturn(false);
+        when(stripedStockService.isStriped(2L)).thenReturn(true);
 
 //        when
-        service.reduceQuantityById(orderDuplicateDTO);
+        service.reduceQuantity(List.of(order));
+
+//        then
+        verify(stripedStockService, times(1)).subtract(2L, 3);
+        ArgumentCaptor<List<Object[]>> batchArgs = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), batchArgs.capture());
+        assertEquals(1, batchArgs.getValue().size());
+        assertArrayEquals(new Object[]{1, 1L}, batchArgs.getValue().get(0));
+    }
+
+    @Test
+    void reduceQuantityWithReservation() throws Exception {
+//        given
+        OrderWithProductCartDTO orderDuplicateDTO = OrderWithProductCartDTO.builder()
+                .id("order1")
+                .cart(List.of(cartItem(1L, 1)))
+                .build();
+        when(processedOrderService.markProcessed(anyList())).thenReturn(new HashSet<>(Set.of("order1")));
+        stubCommittedReservations(new Object[]{"order1", 1L, 1});
+
+//        when
+        service.reduceQuantity(List.of(orderDuplicateDTO));
+
+//        then
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        verifyNoInteractions(inventoryLedgerService, stockCache);
+    }
+
+    @Test
+    void reduceQuantityAfterReservationExpired() throws Exception {
+//        given
+        OrderWithProductCartDTO order = OrderWithProductCartDTO.builder()
+                .id("order1")
+                .cart(List.of(cartItem(1L, 4), cartItem(2L, 1)))
+                .build();
+        when(processedOrderService.markProcessed(anyList())).thenReturn(new HashSet<>(Set.of("order1")));
+        // the hold of product 1 expired and was released before the order arrived, only product 2 is still held
+        stubCommittedReservations(new Object[]{"order1", 2L, 1});
+
+//        when
+        service.reduceQuantity(List.of(order));
+
+//        then
+        ArgumentCaptor<List<Object[]>> batchArgs = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), batchArgs.capture());
+        assertEquals(1, batchArgs.getValue().size());
+        assertArrayEquals(new Object[]{4, 1L}, batchArgs.getValue().get(0));
+        ArgumentCaptor<List<InventoryMovement>> movementCaptor = ArgumentCaptor.forClass(List.class);
+        verify(inventoryLedgerService, times(1)).recordAll(movementCaptor.capture());
+        assertEquals(1, movementCaptor.getValue().size());
+        assertEquals(-4, movementCaptor.getValue().get(0).getQuantityChange());
+    }
+
+    @Test
+    void reduceQuantitySkipsProcessedOrder() {
+//        given
+        OrderWithProductCartDTO processedOrder = OrderWithProductCartDTO.builder()
+                .id("order1")
+                .cart(List.of(cartItem(1L, 1)))
+                .build();
+        OrderWithProductCartDTO newOrder = OrderWithProductCartDTO.builder()
+                .id("order2")
+                .cart(List.of(cartItem(1L, 2)))
+                .build();
+        when(processedOrderService.markProcessed(anyList())).thenReturn(new HashSet<>(Set.of("order2")));
+
+//        when
+        service.reduceQuantity(List.of(processedOrder, newOrder, newOrder));
 
 //        then
-        verify(entityManager, times(2)).createNativeQuery(anyString());
-        verify(queryMock, times(2)).executeUpdate();
+        verify(processedOrderService, times(1)).markProcessed(List.of("order1", "order2", "order2"));
+        verify(jdbcTemplate, times(1)).query(startsWith("DELETE FROM reservation"), any(RowCallbackHandler.class), eq("order2"));
+        ArgumentCaptor<List<Object[]>> batchArgs = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), batchArgs.capture());
+        assertArrayEquals(new Object[]{2, 1L}, batchArgs.getValue().get(0));
+    }
+
+    @Test
+    void reduceQuantitySkipsUnreadableRecord() {
+//        given
+        OrderWithProductCartDTO order = OrderWithProductCartDTO.builder()
+                .id("order1")
+                .cart(List.of(cartItem(1L, 1)))
+                .build();
+        when(processedOrderService.markProcessed(anyList())).thenReturn(new HashSet<>(Set.of("order1")));
+
+//        when
+        service.reduceQuantity(Arrays.asList(null, order));
+
+//        then
+        verify(processedOrderService, times(1)).markProcessed(List.of("order1"));
+        ArgumentCaptor<List<Object[]>> batchArgs = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), batchArgs.capture());
+        assertArrayEquals(new Object[]{1, 1L}, batchArgs.getValue().get(0));
+    }
+
+    @Test
+    void reduceQuantityWithOnlyProcessedOrders() {
+//        given
+        OrderWithProductCartDTO processedOrder = OrderWithProductCartDTO.builder()
+                .id("order1")
+                .cart(List.of(cartItem(1L, 1)))
+                .build();
+        when(processedOrderService.markProcessed(anyList())).thenReturn(new HashSet<>());
+
+//        when
+        service.reduceQuantity(List.of(processedOrder));
+
+//        then
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    // each row is the order ID, product ID and quantity of a reservation the commit removes
+    private void stubCommittedReservations(Object[]... rows) throws Exception {
+        List<ResultSet> resultSets = new ArrayList<>();
+        for (Object[] row : rows) {
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getString(1)).thenReturn((String) row[0]);
+            when(rs.getLong(2)).thenReturn((Long) row[1]);
+            when(rs.getInt(3)).thenReturn((Integer) row[2]);
+            resultSets.add(rs);
+        }
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1, RowCallbackHandler.class);
+            for (ResultSet rs : resultSets) {
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(startsWith("DELETE FROM reservation"), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    private CartItemDTO cartItem(Long productId, Integer quantity) {
+        return CartItemDTO.builder()
+                .productId(productId)
+                .quantity(quantity)
+                .unitPrice(new BigDecimal("9.99"))
+                .build();
     }
 }
@@ -0,0 +1,239 @@
+package com.shop.storageservice.service;
+
+import com.shop.storageservice.model.Storage;
+import com.shop.storageservice.repository.StorageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StripedStockServiceTest {
+
+    @Mock
+    private StorageRepository repository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @InjectMocks
+    private StripedStockService service;
+
+    private Storage storage;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(service, "maxStripes", 64);
+        storage = Storage.builder()
+                .productId(1L)
+                .quantity(10)
+                .build();
+    }
+
+    @Test
+    void enable() {
+//        given
+        when(repository.findByIdForUpdate(1L)).thenReturn(Optional.of(storage));
+        when(jdbcTemplate.queryForList(startsWith("DELETE FROM storage_stripe"), eq(Integer.class), eq(1L)))
+                .thenReturn(List.of());
+
+//        when
+        service.enable(1L, 4);
+
+//        then
+        ArgumentCaptor<List<Object[]>> batchArgs = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith("INSERT INTO storage_stripe"), batchArgs.capture());
+        assertEquals(4, batchArgs.getValue().size());
+        assertArrayEquals(new Object[]{1L, 0, 3}, batchArgs.getValue().get(0));
+        assertArrayEquals(new Object[]{1L, 1, 3}, batchArgs.getValue().get(1));
+        assertArrayEquals(new Object[]{1L, 3, 2}, batchArgs.getValue().get(3));
+        assertEquals(0, storage.getQuantity());
+        verify(repository, times(1)).save(storage);
+        assertTrue(service.isStriped(1L));
+    }
+
+    @Test
+    void enableMissingProduct() {
+//        when
+        service.enable(1L, 4);
+
+//        then
+        verifyNoInteractions(jdbcTemplate);
+        assertFalse(service.isStriped(1L));
+    }
+
+    @Test
+    void disable() {
+//        given
+        when(repository.findByIdForUpdate(1L)).thenReturn(Optional.of(storage));
+        when(jdbcTemplate.queryForList(startsWith("DELETE FROM storage_stripe"), eq(Integer.class), eq(1L)))
+                .thenReturn(List.of(3, 4));
+
+//        when
+        service.disable(1L);
+
+//        then
+        assertEquals(17, storage.getQuantity());
+        verify(repository, times(1)).save(storage);
+        assertFalse(service.isStriped(1L));
+    }
+
+    @Test
+    void addToUnstripedProduct() {
+//        when
+        service.add(1L, 5);
+
+//        then
+        verify(repository, times(1)).raiseProductQuantityById(1L, 5);
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void addToStripedProduct() {
+//        given
+        ReflectionTestUtils.setField(service, "stripeCountById", new ConcurrentHashMap<>(Map.of(1L, 4)));
+        when(jdbcTemplate.update(startsWith("UPDATE storage_stripe"), eq(5), eq(1L), anyInt())).thenReturn(1);
+
+//        when
+        service.add(1L, 5);
+
+//        then
+        verify(repository, never()).raiseProductQuantityById(anyLong(), anyInt());
+    }
+
+    @Test
+    void takeSpillsOverToNextStripe() {
+//        given
+        ReflectionTestUtils.setField(service, "stripeCountById", new ConcurrentHashMap<>(Map.of(1L, 2)));
+        when(jdbcTemplate.update(startsWith("UPDATE storage_stripe"), eq(5), eq(1L), anyInt(), eq(5)))
+                .thenReturn(0, 1);
+
+//        when
+        boolean taken = service.take(1L, 5);
+
+//        then
+        assertTrue(taken);
+        verify(jdbcTemplate, times(2)).update(startsWith("UPDATE storage_stripe"), eq(5), eq(1L), anyInt(), eq(5));
+        verify(repository, never()).reserveProductQuantityById(anyLong(), anyInt());
+    }
+
+    @Test
+    void takeFromUnstripedProduct() {
+//        given
+        when(repository.reserveProductQuantityById(1L, 5)).thenReturn(1);
+
+//        when
+        boolean taken = service.take(1L, 5);
+
+//        then
+        assertTrue(taken);
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void takeOutOfStockWithoutStripes() {
+//        given
+        when(repository.reserveProductQuantityById(1L, 5)).thenReturn(0);
+        when(jdbcTemplate.queryForObject(startsWith("SELECT COALESCE(SUM(quantity), 0)"), eq(Integer.class), eq(1L)))
+                .thenReturn(0);
+
+//        when
+        boolean taken = service.take(1L, 5);
+
+//        then
+        assertFalse(taken);
+        verify(repository, never()).findByIdForUpdate(anyLong());
+    }
+
+    @Test
+    void takeGathersFromAllStripes() throws Exception {
+//        given
+        storage.setQuantity(1);
+        when(repository.reserveProductQuantityById(1L, 8)).thenReturn(0);
+        when(jdbcTemplate.queryForObject(startsWith("SELECT COALESCE(SUM(quantity), 0)"), eq(Integer.class), eq(1L)))
+                .thenReturn(6);
+        when(repository.findByIdForUpdate(1L)).thenReturn(Optional.of(storage));
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getInt(1)).thenReturn(0, 1);
+        when(rs.getInt(2)).thenReturn(3, 4);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            handler.processRow(rs);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT stripe, quantity"), any(RowCallbackHandler.class), eq(1L));
+
+//        when
+        boolean taken = service.take(1L, 8);
+
+//        then
+        assertTrue(taken);
+        ArgumentCaptor<List<Object[]>> batchArgs = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith("UPDATE storage_stripe"), batchArgs.capture());
+        assertArrayEquals(new Object[]{3, 1L, 0}, batchArgs.getValue().get(0));
+        assertArrayEquals(new Object[]{4, 1L, 1}, batchArgs.getValue().get(1));
+        assertEquals(0, storage.getQuantity());
+        verify(repository, times(1)).save(storage);
+    }
+
+    @Test
+    void subtractOverdrawsStorageRow() {
+//        given
+        when(repository.reserveProductQuantityById(1L, 5)).thenReturn(0);
+        when(jdbcTemplate.queryForObject(startsWith("SELECT COALESCE(SUM(quantity), 0)"), eq(Integer.class), eq(1L)))
+                .thenReturn(0);
+
+//        when
+        service.subtract(1L, 5);
+
+//        then
+        verify(repository, times(1)).raiseProductQuantityById(1L, -5);
+    }
+
+    @Test
+    void spreadUnstripedProduct() {
+//        given
+        when(jdbcTemplate.queryForList(startsWith("DELETE FROM storage_stripe"), eq(Integer.class), eq(1L)))
+                .thenReturn(List.of());
+
+//        when
+        Integer striped = service.spread(1L, 100);
+
+//        then
+        assertNull(striped);
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void spreadStripedProduct() {
+//        given
+        when(jdbcTemplate.queryForList(startsWith("DELETE FROM storage_stripe"), eq(Integer.class), eq(1L)))
+                .thenReturn(List.of(3, 4));
+
+//        when
+        Integer striped = service.spread(1L, 9);
+
+//        then
+        assertEquals(7, striped);
+        ArgumentCaptor<List<Object[]>> batchArgs = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith("INSERT INTO storage_stripe"), batchArgs.capture());
+        assertArrayEquals(new Object[]{1L, 0, 5}, batchArgs.getValue().get(0));
+        assertArrayEquals(new Object[]{1L, 1, 4}, batchArgs.getValue().get(1));
+    }
+}
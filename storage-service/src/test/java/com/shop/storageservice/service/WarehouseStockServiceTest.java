@@ -0,0 +1,183 @@
+package com.shop.storageservice.service;
+
+import com.shop.storageservice.dto.AllocationLineDTO;
+import com.shop.storageservice.model.Warehouse;
+import com.shop.storageservice.repository.WarehouseRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.sql.ResultSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class WarehouseStockServiceTest {
+
+    @Mock
+    private WarehouseRepository warehouseRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @InjectMocks
+    private WarehouseStockService service;
+
+    @Test
+    void saveWarehouse() {
+//        given
+        Warehouse warehouse = Warehouse.builder().id(1L).name("Kyiv").build();
+        when(warehouseRepository.save(warehouse)).thenReturn(warehouse);
+        when(warehouseRepository.findAll()).thenReturn(List.of(warehouse));
+
+//        when
+        service.saveWarehouse(warehouse);
+
+//        then
+        assertEquals(List.of(warehouse), service.findAllWarehouse());
+        verify(redisTemplate, times(1)).convertAndSend(eq(WarehouseStockService.CHANGE_CHANNEL), endsWith("|"));
+    }
+
+    @Test
+    void add() throws Exception {
+//        given
+        stubRows(1L, 10L, 7);
+
+//        when
+        service.add(1L, 10L, 5);
+
+//        then
+        verify(jdbcTemplate, times(1)).update(contains("ON CONFLICT (warehouse_id, product_id)"), eq(1L), eq(10L), eq(5));
+        assertEquals(Map.of(1L, 7), service.findStockByWarehouseId(10L));
+        verify(redisTemplate, times(1)).convertAndSend(eq(WarehouseStockService.CHANGE_CHANNEL), endsWith("|10"));
+    }
+
+    @Test
+    void takeFallsBackToUnassignedStock() throws Exception {
+//        given
+        AllocationLineDTO held = AllocationLineDTO.builder().warehouseId(1L).productId(10L).quantity(2).build();
+        AllocationLineDTO gone = AllocationLineDTO.builder().warehouseId(2L).productId(10L).quantity(1).build();
+        AllocationLineDTO unassigned = AllocationLineDTO.builder().productId(10L).quantity(1).build();
+        when(jdbcTemplate.update(startsWith("UPDATE warehouse_stock"), eq(2), eq(1L), eq(10L), eq(2))).thenReturn(1);
+        when(jdbcTemplate.update(startsWith("UPDATE warehouse_stock"), eq(1), eq(2L), eq(10L), eq(1))).thenReturn(0);
+        stubRows(1L, 10L, 3);
+
+//        when
+        List<AllocationLineDTO> taken = service.take(List.of(held, gone, unassigned));
+
+//        then
+        assertEquals(List.of(held, unassigned, unassigned), taken);
+        assertEquals(Map.of(1L, 3), service.findStockByWarehouseId(10L));
+    }
+
+    @Test
+    void fitTakesExcessFromLowestPriorityWarehouses() throws Exception {
+//        given
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(1)).thenReturn(10L);
+        when(rs.getLong(2)).thenReturn(2L, 1L);
+        when(rs.getInt(3)).thenReturn(3, 5);
+        when(rs.getInt(4)).thenReturn(4);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1, RowCallbackHandler.class);
+            handler.processRow(rs);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT ws.product_id"), any(RowCallbackHandler.class), eq(10L));
+        stubRows(1L, 10L, 4);
+
+//        when
+        service.fit(List.of(10L));
+
+//        then
+        ArgumentCaptor<List<Object[]>> batchArgs = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith("UPDATE warehouse_stock"), batchArgs.capture());
+        assertEquals(2, batchArgs.getValue().size());
+        assertArrayEquals(new Object[]{3, 2L, 10L}, batchArgs.getValue().get(0));
+        assertArrayEquals(new Object[]{1, 1L, 10L}, batchArgs.getValue().get(1));
+        assertEquals(Map.of(1L, 4), service.findStockByWarehouseId(10L));
+    }
+
+    @Test
+    void fitWithinTotalChangesNothing() {
+//        when
+        service.fit(List.of(10L));
+
+//        then
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        verify(redisTemplate, never()).convertAndSend(anyString(), anyString());
+    }
+
+    @Test
+    void load() throws Exception {
+//        given
+        when(warehouseRepository.findAll()).thenReturn(List.of());
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(1)).thenReturn(1L);
+        when(rs.getLong(2)).thenReturn(10L);
+        when(rs.getInt(3)).thenReturn(4);
+        doAnswer(invocation -> {
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT warehouse_id"), any(RowCallbackHandler.class));
+
+//        when
+        service.load();
+
+//        then
+        assertEquals(Map.of(1L, 4), service.findStockByWarehouseId(10L));
+        assertEquals(Map.of(), service.findStockByWarehouseId(20L));
+    }
+
+    @Test
+    void onChangeReloadsProductsChangedByAnotherInstance() throws Exception {
+//        given
+        stubRows(1L, 10L, 2);
+
+//        when
+        service.onChange("other-instance|10");
+
+//        then
+        assertEquals(Map.of(1L, 2), service.findStockByWarehouseId(10L));
+        verify(redisTemplate, never()).convertAndSend(anyString(), anyString());
+    }
+
+    @Test
+    void onChangeReloadsWarehouses() {
+//        given
+        Warehouse warehouse = Warehouse.builder().id(1L).name("Kyiv").build();
+        when(warehouseRepository.findAll()).thenReturn(List.of(warehouse));
+
+//        when
+        service.onChange("other-instance|");
+
+//        then
+        assertEquals(List.of(warehouse), service.findAllWarehouse());
+        verify(jdbcTemplate, never()).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+    }
+
+    private void stubRows(Long warehouseId, Long productId, Integer quantity) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(1)).thenReturn(warehouseId);
+        when(rs.getLong(2)).thenReturn(productId);
+        when(rs.getInt(3)).thenReturn(quantity);
+        doAnswer(invocation -> {
+            invocation.getArgument(1, RowCallbackHandler.class).processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("SELECT warehouse_id"), any(RowCallbackHandler.class), eq(productId));
+    }
+}